@@ -0,0 +1,157 @@
+package com.learn.exchange;
+
+import com.learn.exchange.assets.AssetService;
+import com.learn.exchange.clearing.ClearingService;
+import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.messaging.BatchMessageHandler;
+import com.learn.exchange.messaging.MessageConsumer;
+import com.learn.exchange.messaging.MessageProducer;
+import com.learn.exchange.messaging.Messaging;
+import com.learn.exchange.messaging.MessagingFactory;
+import com.learn.exchange.model.support.EntitySupport;
+import com.learn.exchange.order.OrderService;
+import com.learn.exchange.redis.RedisConfiguration;
+import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.store.StoreService;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 不依赖 Kafka / Redis / 数据库的 TradingEngineService:
+// 外部依赖全部替换为只计数的内存实现，事件由调用方直接传入 processMessages
+public class StandaloneTradingEngine {
+
+    final TradingEngineService engine;
+    final CountingRedisService redisService;
+    final CountingMessagingFactory messagingFactory;
+    final CountingStoreService storeService;
+
+    public StandaloneTradingEngine(ZoneId zoneId) {
+        var assetService = new AssetService();
+        var orderService = new OrderService(assetService);
+        this.engine = new TradingEngineService();
+        this.redisService = new CountingRedisService();
+        this.messagingFactory = new CountingMessagingFactory();
+        this.storeService = new CountingStoreService();
+        engine.zoneId = zoneId;
+        engine.assetService = assetService;
+        engine.orderService = orderService;
+        engine.matchEngine = new MatchEngine();
+        engine.clearingService = new ClearingService(assetService, orderService);
+        engine.redisService = this.redisService;
+        engine.messagingFactory = this.messagingFactory;
+        engine.storeService = this.storeService;
+        // 启动与生产环境相同的异步输出线程
+        engine.init();
+    }
+
+    public void processMessages(List<AbstractEvent> events) {
+        engine.processMessages(events);
+    }
+
+    public String stats() {
+        return "redis publish=" + redisService.published.get() + ", orderbook updates=" + redisService.scripts.get()
+                + ", stream appends=" + redisService.streamAppends.get()
+                + ", tick messages=" + messagingFactory.sent.get() + ", db rows=" + storeService.inserted.get();
+    }
+
+    public void shutdown() {
+        engine.destroy();
+        redisService.shutdown();
+    }
+
+    static class CountingRedisService extends RedisService {
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong scripts = new AtomicLong();
+        final AtomicLong streamAppends = new AtomicLong();
+
+        CountingRedisService() {
+            // 只创建客户端对象，不会建立连接
+            super(localConfiguration());
+        }
+
+        static RedisConfiguration localConfiguration() {
+            RedisConfiguration config = new RedisConfiguration();
+            config.setHost("localhost");
+            config.setPort(6379);
+            config.setPassword("");
+            return config;
+        }
+
+        @Override
+        public String loadScriptFromClasspath(String classPathFile) {
+            return classPathFile;
+        }
+
+        @Override
+        public Boolean executeScriptReturnBoolean(String sha, String[] keys, String[] values) {
+            scripts.incrementAndGet();
+            return Boolean.TRUE;
+        }
+
+        @Override
+        public Long executeScriptReturnLong(String sha, String[] keys, String[] values) {
+            streamAppends.incrementAndGet();
+            return 0L;
+        }
+
+        @Override
+        public void hset(String key, String field, String value) {
+        }
+
+        @Override
+        public Map<String, String> hgetAll(String key) {
+            return Map.of();
+        }
+
+        @Override
+        public Map<String, String> hsetAndGetAll(String key, String field, String value, long ttlSeconds) {
+            return Map.of(field, value);
+        }
+
+        @Override
+        public void publish(String topic, String data) {
+            published.incrementAndGet();
+        }
+
+        @Override
+        public void publishAll(Map<String, List<String>> channelMessages) {
+            for(List<String> messages : channelMessages.values())
+                published.addAndGet(messages.size());
+        }
+    }
+
+    static class CountingMessagingFactory implements MessagingFactory {
+        final AtomicLong sent = new AtomicLong();
+
+        @Override
+        public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+                Messaging.Topic topic, Class<T> messageClass) {
+            return message -> sent.incrementAndGet();
+        }
+
+        @Override
+        public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+                Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
+            return () -> {};
+        }
+    }
+
+    static class CountingStoreService extends StoreService {
+        final AtomicLong inserted = new AtomicLong();
+
+        @Override
+        public List<AbstractEvent> loadEventsFromBd(long lastSequenceId) {
+            return List.of();
+        }
+
+        @Override
+        public void insertIgnore(List<? extends EntitySupport> list) {
+            inserted.addAndGet(list.size());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.learn.exchange.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// 运行 benchmark: java -jar benchmark/target/benchmarks.jar [JMH参数]
+// 例如只运行撮合: java -jar benchmarks.jar MatchEngineBenchmark -p depth=100
+// 默认同时输出吞吐量和分配速率(gc.alloc.rate / gc.alloc.rate.norm)，结果另存为 jmh-result.json
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmdOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(cmdOptions.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(cmdOptions.getResult().orElse("jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,32 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.enums.OrderStatus;
+import com.learn.exchange.model.trade.OrderEntity;
+
+import java.math.BigDecimal;
+
+// benchmark 公用的构造方法
+final class BenchmarkSupport {
+
+    static final long BASE_TS = 1733400000000L;
+
+    static final Long USER_ID = 1000L;
+
+    // 直接构造订单，不经过 OrderService 冻结资产，仅用于 MatchEngine / OrderBook
+    static OrderEntity createOrder(long sequenceId, Direction direction, BigDecimal price, BigDecimal quantity) {
+        OrderEntity order = new OrderEntity();
+        order.id = sequenceId * 10000 + 202412;
+        order.sequenceId = sequenceId;
+        order.userId = USER_ID;
+        order.direction = direction;
+        order.price = price;
+        order.quantity = order.unfilledQuantity = quantity;
+        order.status = OrderStatus.PENDING;
+        order.createdAt = order.updatedAt = BASE_TS + sequenceId;
+        return order;
+    }
+
+    private BenchmarkSupport() {
+    }
+}
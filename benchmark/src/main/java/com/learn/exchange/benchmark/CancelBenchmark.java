@@ -0,0 +1,67 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.model.trade.OrderEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static com.learn.exchange.benchmark.BenchmarkSupport.createOrder;
+
+// 撤单密集场景：每次撤销最早的一笔挂单，并在同一价位补一笔新挂单
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CancelBenchmark {
+
+    static final BigDecimal MID = new BigDecimal("10000");
+
+    // 订单簿中每边的挂单数
+    @Param({"100", "10000", "100000"})
+    int orders;
+
+    // 每个价位的挂单数
+    @Param({"1", "10"})
+    int ordersPerLevel;
+
+    MatchEngine engine;
+    long sequenceId;
+    // 按挂单时间排列的活动订单，环形使用
+    OrderEntity[] resting;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.engine = new MatchEngine();
+        this.sequenceId = 0;
+        this.next = 0;
+        this.resting = new OrderEntity[orders * 2];
+        for(int i = 0; i < orders; i++) {
+            int level = i / ordersPerLevel + 1;
+            this.resting[i * 2] = rest(Direction.BUY, MID.subtract(BigDecimal.valueOf(level)));
+            this.resting[i * 2 + 1] = rest(Direction.SELL, MID.add(BigDecimal.valueOf(level)));
+        }
+    }
+
+    @Benchmark
+    public OrderEntity cancelAndReplace() {
+        OrderEntity order = this.resting[next];
+        engine.cancel(order.createdAt, order);
+        OrderEntity replace = rest(order.direction, order.price);
+        this.resting[next] = replace;
+        this.next = (next + 1) % resting.length;
+        return replace;
+    }
+
+    private OrderEntity rest(Direction direction, BigDecimal price) {
+        this.sequenceId++;
+        OrderEntity order = createOrder(this.sequenceId, direction, price, BigDecimal.ONE);
+        engine.processOrder(order.sequenceId, order);
+        return order;
+    }
+}
@@ -0,0 +1,98 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.assets.AssetService;
+import com.learn.exchange.assets.Transfer;
+import com.learn.exchange.clearing.ClearingService;
+import com.learn.exchange.enums.AssetEnum;
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.enums.UserType;
+import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.match.MatchResult;
+import com.learn.exchange.model.trade.OrderEntity;
+import com.learn.exchange.order.OrderService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static com.learn.exchange.benchmark.BenchmarkSupport.BASE_TS;
+
+// ClearingService.clearMatchResult：一笔买单吃掉 makers 个卖单后的清算
+// 每轮迭代前预先撮合出 POOL 个结果，迭代内依次清算，只统计清算本身
+// SingleShotTime + batchSize 保证每轮恰好调用 POOL 次，结果为清算 POOL 个结果的总耗时
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = ClearingBenchmark.POOL)
+@Measurement(iterations = 10, batchSize = ClearingBenchmark.POOL)
+@Fork(1)
+@State(Scope.Thread)
+public class ClearingBenchmark {
+
+    static final Long TAKER = 10L;
+    static final long MAKER_BASE = 100L;
+    static final BigDecimal MID = new BigDecimal("10000");
+    static final int POOL = 1000;
+
+    @Param({"1", "10", "200"})
+    int makers;
+
+    AssetService assetService;
+    OrderService orderService;
+    MatchEngine matchEngine;
+    ClearingService clearingService;
+    long sequenceId;
+
+    BigDecimal takerPrice;
+    BigDecimal takerQuantity;
+
+    MatchResult[] results;
+    int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.assetService = new AssetService();
+        this.orderService = new OrderService(assetService);
+        this.matchEngine = new MatchEngine();
+        this.clearingService = new ClearingService(assetService, orderService);
+        this.sequenceId = 0;
+        Long debt = UserType.DEBT.getInternalUserId();
+        // 充值足够大的余额，保证测试期间不会不足
+        assetService.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, debt, TAKER, AssetEnum.USD,
+                new BigDecimal("1000000000000000"), false);
+        for(int i = 0; i < makers; i++) {
+            assetService.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, debt, MAKER_BASE + i, AssetEnum.BTC,
+                    new BigDecimal("1000000000"), false);
+        }
+        this.takerPrice = MID.add(BigDecimal.valueOf(makers));
+        this.takerQuantity = BigDecimal.valueOf(makers);
+        this.results = new MatchResult[POOL];
+    }
+
+    @Setup(Level.Iteration)
+    public void prepare() {
+        // 每个结果的卖单都被完全吃掉，结果之间互不影响，可以按顺序清算
+        for(int n = 0; n < POOL; n++) {
+            // 卖单价格依次递增，买单以最高价成交，覆盖退还差价的路径
+            for(int i = 0; i < makers; i++) {
+                OrderEntity maker = create(MAKER_BASE + i, Direction.SELL, MID.add(BigDecimal.valueOf(i)), BigDecimal.ONE);
+                matchEngine.processOrder(maker.sequenceId, maker);
+            }
+            OrderEntity taker = create(TAKER, Direction.BUY, takerPrice, takerQuantity);
+            this.results[n] = matchEngine.processOrder(taker.sequenceId, taker);
+        }
+        this.cursor = 0;
+    }
+
+    @Benchmark
+    public MatchResult clearMatchResult() {
+        MatchResult result = results[cursor++];
+        clearingService.clearMatchResult(result);
+        return result;
+    }
+
+    private OrderEntity create(Long userId, Direction direction, BigDecimal price, BigDecimal quantity) {
+        this.sequenceId++;
+        return orderService.createOrder(sequenceId, BASE_TS + sequenceId, sequenceId * 10000 + 202412,
+                userId, direction, price, quantity);
+    }
+}
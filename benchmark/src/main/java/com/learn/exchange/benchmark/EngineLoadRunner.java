@@ -0,0 +1,162 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.StandaloneTradingEngine;
+import com.learn.exchange.load.SyntheticEventGenerator;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.messaging.MessageTypes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.*;
+
+// 端到端压测 TradingEngineService.processMessages，Kafka / Redis / 数据库均替换为内存实现
+//
+// 合成负载(固定种子，可重现):
+//   java -cp benchmarks.jar com.learn.exchange.benchmark.EngineLoadRunner --events 1000000 --batch 500 --seed 42
+// 回放 events 表(必须从第一个事件开始导出):
+//   mysql -N -B -r -e "SELECT data FROM events ORDER BY sequenceId" exchange > events.txt
+//   java -cp benchmarks.jar com.learn.exchange.benchmark.EngineLoadRunner --replay events.txt --batch 500
+public class EngineLoadRunner {
+
+    static final long START_TS = 1733400000000L;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseArgs(args);
+        int batch = Integer.parseInt(options.getOrDefault("batch", "500"));
+        ZoneId zoneId = ZoneId.of(options.getOrDefault("zone", "Z"));
+
+        Iterator<List<AbstractEvent>> batches;
+        int warmupEvents = 0;
+        if(options.containsKey("replay")) {
+            List<AbstractEvent> events = readDump(Path.of(options.get("replay")));
+            System.out.printf("replay %d events from %s, batch = %d%n", events.size(), options.get("replay"), batch);
+            batches = partition(events, batch);
+        } else {
+            long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+            int users = Integer.parseInt(options.getOrDefault("users", "1000"));
+            int makers = Integer.parseInt(options.getOrDefault("makers", "20"));
+            int total = Integer.parseInt(options.getOrDefault("events", "1000000"));
+            warmupEvents = Integer.parseInt(options.getOrDefault("warmup", "200000"));
+            System.out.printf("synthetic load: seed = %d, users = %d, market makers = %d, events = %d, warmup = %d, batch = %d%n",
+                    seed, users, makers, total, warmupEvents, batch);
+            batches = generate(new SyntheticEventGenerator(seed, users, makers, zoneId, START_TS),
+                    warmupEvents + total, batch);
+        }
+
+        StandaloneTradingEngine engine = new StandaloneTradingEngine(zoneId);
+        try {
+            run(engine, batches, warmupEvents);
+        } finally {
+            engine.shutdown();
+            // 引擎的异步输出线程不会自行退出
+            System.exit(0);
+        }
+    }
+
+    static void run(StandaloneTradingEngine engine, Iterator<List<AbstractEvent>> batches, int warmupEvents) {
+        // 预热阶段的批次不计入统计
+        long warmed = 0;
+        while(warmed < warmupEvents && batches.hasNext()) {
+            List<AbstractEvent> events = batches.next();
+            engine.processMessages(events);
+            warmed += events.size();
+        }
+
+        long[] latencies = new long[1024];
+        int count = 0;
+        long events = 0;
+        long busyNanos = 0;
+        long startWall = System.nanoTime();
+        while(batches.hasNext()) {
+            List<AbstractEvent> list = batches.next();
+            long start = System.nanoTime();
+            engine.processMessages(list);
+            long elapsed = System.nanoTime() - start;
+            if(count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = elapsed;
+            busyNanos += elapsed;
+            events += list.size();
+        }
+        long wallNanos = System.nanoTime() - startWall;
+        report(events, count, busyNanos, wallNanos, Arrays.copyOf(latencies, count));
+        System.out.println("outputs: " + engine.stats());
+    }
+
+    static void report(long events, int batches, long busyNanos, long wallNanos, long[] latencies) {
+        if(batches == 0) {
+            System.out.println("no events processed.");
+            return;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("processed %d events in %d batches%n", events, batches);
+        System.out.printf("throughput: %.0f events/s (engine busy time), %.0f events/s (wall time)%n",
+                events * 1e9 / busyNanos, events * 1e9 / wallNanos);
+        System.out.printf("batch latency (us): p50 = %.1f, p90 = %.1f, p99 = %.1f, p99.9 = %.1f, max = %.1f%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                percentile(latencies, 99.9), latencies[latencies.length - 1] / 1000.0);
+        System.out.printf("mean latency per event (us): %.3f%n", busyNanos / 1000.0 / events);
+    }
+
+    static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+    }
+
+    static Iterator<List<AbstractEvent>> generate(SyntheticEventGenerator generator, long total, int batch) {
+        return new Iterator<>() {
+            long remaining = total;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public List<AbstractEvent> next() {
+                int n = (int) Math.min(batch, remaining);
+                remaining -= n;
+                return generator.next(n);
+            }
+        };
+    }
+
+    static Iterator<List<AbstractEvent>> partition(List<AbstractEvent> events, int batch) {
+        List<List<AbstractEvent>> batches = new ArrayList<>();
+        for(int i = 0; i < events.size(); i += batch)
+            batches.add(events.subList(i, Math.min(events.size(), i + batch)));
+        return batches.iterator();
+    }
+
+    static List<AbstractEvent> readDump(Path file) throws IOException {
+        MessageTypes messageTypes = new MessageTypes();
+        messageTypes.init();
+        List<AbstractEvent> events = new ArrayList<>();
+        try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(line.isBlank())
+                    continue;
+                events.add((AbstractEvent) messageTypes.deserialize(line.strip()));
+            }
+        }
+        if(!events.isEmpty() && events.getFirst().previousId != 0)
+            throw new IllegalArgumentException("dump must start from the first event, but previousId = "
+                    + events.getFirst().previousId);
+        return events;
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for(int i = 0; i < args.length; i++) {
+            if(!args[i].startsWith("--") || i + 1 >= args.length)
+                throw new IllegalArgumentException("Invalid argument: " + args[i]);
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
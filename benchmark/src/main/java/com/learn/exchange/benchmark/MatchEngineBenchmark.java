@@ -0,0 +1,105 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.match.MatchResult;
+import com.learn.exchange.model.trade.OrderEntity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static com.learn.exchange.benchmark.BenchmarkSupport.createOrder;
+
+// MatchEngine.processOrder 在不同订单簿深度和成交形态下的吞吐量
+// 每次操作结束后补回被吃掉的挂单，保持订单簿深度不变
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchEngineBenchmark {
+
+    public enum Pattern {
+        // 不成交，挂单后撤销
+        PASSIVE,
+        // 吃掉卖一档的一笔挂单
+        CROSS,
+        // 一次吃掉卖盘前 SWEEP_LEVELS 档
+        SWEEP
+    }
+
+    static final int ORDERS_PER_LEVEL = 3;
+    static final int SWEEP_LEVELS = 5;
+    static final BigDecimal ONE = BigDecimal.ONE;
+    static final BigDecimal MID = new BigDecimal("10000");
+
+    // 每边的价格档位数
+    @Param({"10", "100", "1000"})
+    int depth;
+
+    @Param
+    Pattern pattern;
+
+    MatchEngine engine;
+    long sequenceId;
+
+    BigDecimal[] askPrices;
+    BigDecimal passiveBuyPrice;
+    BigDecimal sweepQuantity;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.engine = new MatchEngine();
+        this.sequenceId = 0;
+        this.askPrices = new BigDecimal[depth];
+        for(int i = 0; i < depth; i++) {
+            BigDecimal bid = MID.subtract(BigDecimal.valueOf(i + 1));
+            BigDecimal ask = MID.add(BigDecimal.valueOf(i + 1));
+            this.askPrices[i] = ask;
+            for(int j = 0; j < ORDERS_PER_LEVEL; j++) {
+                rest(Direction.BUY, bid);
+                rest(Direction.SELL, ask);
+            }
+        }
+        this.passiveBuyPrice = MID.subtract(BigDecimal.valueOf(depth + 1));
+        this.sweepQuantity = BigDecimal.valueOf(SWEEP_LEVELS * ORDERS_PER_LEVEL);
+    }
+
+    @Benchmark
+    public void processOrder(Blackhole bh) {
+        switch (pattern) {
+            case PASSIVE -> {
+                OrderEntity order = next(Direction.BUY, passiveBuyPrice, ONE);
+                bh.consume(engine.processOrder(order.sequenceId, order));
+                engine.cancel(order.createdAt, order);
+            }
+            case CROSS -> {
+                OrderEntity taker = next(Direction.BUY, askPrices[0], ONE);
+                bh.consume(engine.processOrder(taker.sequenceId, taker));
+                rest(Direction.SELL, askPrices[0]);
+            }
+            case SWEEP -> {
+                OrderEntity taker = next(Direction.BUY, askPrices[SWEEP_LEVELS - 1], sweepQuantity);
+                MatchResult result = engine.processOrder(taker.sequenceId, taker);
+                bh.consume(result);
+                for(int i = 0; i < SWEEP_LEVELS; i++) {
+                    for(int j = 0; j < ORDERS_PER_LEVEL; j++)
+                        rest(Direction.SELL, askPrices[i]);
+                }
+            }
+        }
+    }
+
+    private void rest(Direction direction, BigDecimal price) {
+        OrderEntity order = next(direction, price, ONE);
+        engine.processOrder(order.sequenceId, order);
+    }
+
+    private OrderEntity next(Direction direction, BigDecimal price, BigDecimal quantity) {
+        this.sequenceId++;
+        return createOrder(this.sequenceId, direction, price, quantity);
+    }
+}
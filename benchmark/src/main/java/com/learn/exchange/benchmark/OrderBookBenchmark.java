@@ -0,0 +1,61 @@
+package com.learn.exchange.benchmark;
+
+import com.learn.exchange.bean.OrderBookBean;
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.model.trade.OrderEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import static com.learn.exchange.benchmark.BenchmarkSupport.createOrder;
+
+// 生成不同深度的 OrderBook 快照
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderBookBenchmark {
+
+    static final BigDecimal MID = new BigDecimal("10000");
+
+    // 快照深度
+    @Param({"5", "20", "50", "100"})
+    int depth;
+
+    // 每边的价格档位数
+    @Param({"1000"})
+    int levels;
+
+    // 每个价位的挂单数
+    @Param({"1", "5"})
+    int ordersPerLevel;
+
+    MatchEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.engine = new MatchEngine();
+        long sequenceId = 0;
+        for(int i = 0; i < levels; i++) {
+            for(int j = 0; j < ordersPerLevel; j++) {
+                sequenceId++;
+                OrderEntity buy = createOrder(sequenceId, Direction.BUY,
+                        MID.subtract(BigDecimal.valueOf(i + 1)), BigDecimal.ONE);
+                engine.processOrder(sequenceId, buy);
+                sequenceId++;
+                OrderEntity sell = createOrder(sequenceId, Direction.SELL,
+                        MID.add(BigDecimal.valueOf(i + 1)), BigDecimal.ONE);
+                engine.processOrder(sequenceId, sell);
+            }
+        }
+    }
+
+    @Benchmark
+    public OrderBookBean getOrderBook() {
+        return engine.getOrderBook(depth);
+    }
+}
@@ -145,7 +145,7 @@ CREATE TABLE transfer_logs (
 ) CHARACTER SET utf8 COLLATE utf8_general_ci;
 
 CREATE TABLE unique_events (
-    uniqueId VARCHAR(50) NOT NULL,
+    uniqueId VARCHAR(100) NOT NULL,
     createdAt BIGINT NOT NULL,
     sequenceId BIGINT NOT NULL,
     PRIMARY KEY(uniqueId)
@@ -0,0 +1,52 @@
+package com.learn.exchange.bean;
+
+import java.math.BigDecimal;
+
+// 最优买卖价(BBO)，某一侧为空时价格和数量为 null
+public class BestBidOfferBean {
+
+    public final long sequenceId;
+    public final long timestamp;
+    public final BigDecimal bidPrice;
+    public final BigDecimal bidQuantity;
+    public final BigDecimal askPrice;
+    public final BigDecimal askQuantity;
+
+    public BestBidOfferBean(long sequenceId, long timestamp, BigDecimal bidPrice, BigDecimal bidQuantity,
+                            BigDecimal askPrice, BigDecimal askQuantity) {
+        this.sequenceId = sequenceId;
+        this.timestamp = timestamp;
+        this.bidPrice = bidPrice;
+        this.bidQuantity = bidQuantity;
+        this.askPrice = askPrice;
+        this.askQuantity = askQuantity;
+    }
+
+    // 固定字段顺序的紧凑格式: sequenceId,timestamp,bidPrice,bidQuantity,askPrice,askQuantity
+    public String toMessage() {
+        return new StringBuilder(64).append(sequenceId).append(',').append(timestamp).append(',')
+                .append(toString(bidPrice)).append(',').append(toString(bidQuantity)).append(',')
+                .append(toString(askPrice)).append(',').append(toString(askQuantity)).toString();
+    }
+
+    public static BestBidOfferBean parse(String message) {
+        String[] fields = message.split(",", -1);
+        if(fields.length != 6)
+            throw new IllegalArgumentException("Invalid bbo message: " + message);
+        return new BestBidOfferBean(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                parseDecimal(fields[2]), parseDecimal(fields[3]), parseDecimal(fields[4]), parseDecimal(fields[5]));
+    }
+
+    private static String toString(BigDecimal value) {
+        return value == null ? "" : value.toPlainString();
+    }
+
+    private static BigDecimal parseDecimal(String s) {
+        return s.isEmpty() ? null : new BigDecimal(s);
+    }
+
+    @Override
+    public String toString() {
+        return "BestBidOfferBean[" + toMessage() + "]";
+    }
+}
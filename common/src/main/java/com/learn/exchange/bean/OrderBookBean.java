@@ -23,4 +23,13 @@ public class OrderBookBean {
         this.buy = buy;
         this.sell = sell;
     }
+
+    // 截取前 depth 档，共享原列表
+    public OrderBookBean withDepth(int depth) {
+        if(this.buy.size() <= depth && this.sell.size() <= depth)
+            return this;
+        return new OrderBookBean(this.sequenceId, this.price,
+                this.buy.subList(0, Math.min(depth, this.buy.size())),
+                this.sell.subList(0, Math.min(depth, this.sell.size())));
+    }
 }
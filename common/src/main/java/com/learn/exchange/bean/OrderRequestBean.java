@@ -0,0 +1,28 @@
+package com.learn.exchange.bean;
+
+import com.learn.exchange.ApiError;
+import com.learn.exchange.ApiException;
+import com.learn.exchange.enums.Direction;
+
+import java.math.BigDecimal;
+
+// 下单请求
+public class OrderRequestBean {
+
+    public Direction direction;
+    public BigDecimal price;
+    public BigDecimal quantity;
+    // 可选，客户端重试时使用相同的值以避免重复下单
+    public String uniqueId;
+
+    public void validate() {
+        if(this.direction == null)
+            throw new ApiException(ApiError.PARAMETER_INVALID, "direction", "direction is required.");
+        if(this.price == null || this.price.signum() <= 0)
+            throw new ApiException(ApiError.PARAMETER_INVALID, "price", "price must be positive.");
+        if(this.quantity == null || this.quantity.signum() <= 0)
+            throw new ApiException(ApiError.PARAMETER_INVALID, "quantity", "quantity must be positive.");
+        if(this.uniqueId != null && (this.uniqueId.isEmpty() || this.uniqueId.length() > 50))
+            throw new ApiException(ApiError.PARAMETER_INVALID, "uniqueId", "invalid uniqueId.");
+    }
+}
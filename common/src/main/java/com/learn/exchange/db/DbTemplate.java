@@ -137,6 +137,55 @@ public class DbTemplate {
         beans.forEach(bean -> doInsert(bean, true));
     }
 
+    // 使用 JDBC batch 批量插入同一类型的实体，id 必须已指定
+    public <T> void insertBatch(List<T> beans) {
+        if(beans.isEmpty())
+            return;
+        final Mapper<?> mapper = getMapper(beans.getFirst().getClass());
+        if(mapper.id.isIdentityId())
+            throw new IllegalArgumentException("Batch insert requires assigned id: " + mapper.tableName);
+        List<Object[]> batchArgs = new ArrayList<>(beans.size());
+        try {
+            for(T bean : beans) {
+                Object[] args = new Object[mapper.insertableProperties.size()];
+                int n = 0;
+                for(AccessibleProperty p : mapper.insertableProperties)
+                    args[n++] = p.get(bean);
+                batchArgs.add(args);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(e);
+        }
+        if(logger.isDebugEnabled())
+            logger.debug("SQL: {}, batch size: {}", mapper.insertSQL, batchArgs.size());
+        jdbcTemplate.batchUpdate(mapper.insertSQL, batchArgs);
+    }
+
+    // 一条多行 INSERT IGNORE 语句写入，返回实际写入的行数，小于 beans 数量时说明有重复的行被忽略
+    public <T> int insertIgnoreBatch(List<T> beans) {
+        if(beans.isEmpty())
+            return 0;
+        final Mapper<?> mapper = getMapper(beans.getFirst().getClass());
+        int columns = mapper.insertableProperties.size();
+        String values = mapper.insertIgnoreSQL.substring(mapper.insertIgnoreSQL.lastIndexOf('('));
+        StringBuilder sql = new StringBuilder(mapper.insertIgnoreSQL);
+        Object[] args = new Object[columns * beans.size()];
+        int n = 0;
+        try {
+            for(T bean : beans) {
+                if(n > 0)
+                    sql.append(", ").append(values);
+                for(AccessibleProperty p : mapper.insertableProperties)
+                    args[n++] = p.get(bean);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new PersistenceException(e);
+        }
+        if(logger.isDebugEnabled())
+            logger.debug("SQL: {}, rows: {}", mapper.insertIgnoreSQL, beans.size());
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+
     <T> void doInsert(T bean, boolean isIgnore) {
         try {
             int rows = 0;
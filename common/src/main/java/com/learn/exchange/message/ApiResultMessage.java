@@ -12,6 +12,8 @@ public class ApiResultMessage extends AbstractMessage{
             "No enough available asset.");
     public static ApiErrorResponse CANCEL_ORDER_FAILED = new ApiErrorResponse(ApiError.ORDER_NOT_FOUND, null,
             "Order not found.");
+    public static ApiErrorResponse DUPLICATE_REQUEST = new ApiErrorResponse(ApiError.PARAMETER_INVALID, "uniqueId",
+            "Duplicate uniqueId.");
 
     public static ApiResultMessage createOrderFailed(String refId, long ts) {
         ApiResultMessage msg = new ApiResultMessage();
@@ -21,6 +23,14 @@ public class ApiResultMessage extends AbstractMessage{
         return msg;
     }
 
+    public static ApiResultMessage duplicateRequest(String refId, long ts) {
+        ApiResultMessage msg = new ApiResultMessage();
+        msg.error = DUPLICATE_REQUEST;
+        msg.refId = refId;
+        msg.createdAt = ts;
+        return msg;
+    }
+
     public static ApiResultMessage cancelOrderFailed(String refId, long ts) {
         ApiResultMessage msg = new ApiResultMessage();
         msg.error = CANCEL_ORDER_FAILED;
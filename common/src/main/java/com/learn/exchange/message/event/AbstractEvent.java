@@ -11,4 +11,7 @@ public class AbstractEvent extends AbstractMessage {
     // 全局唯一 id，不用则为null
     @Nullable
     public String uniqueId;
+    // 发起请求的网关 id，处理结果推送到该网关的频道，不用则为null
+    @Nullable
+    public String gatewayId;
 }
@@ -0,0 +1,13 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+
+import java.util.List;
+
+// 处理器返回后不提交消费位置，由处理器在消息处理完成后调用 ack 提交
+// 未确认的消息在重启后会重新投递
+@FunctionalInterface
+public interface AcknowledgingBatchMessageHandler<T extends AbstractMessage> {
+
+    void processMessages(List<T> messages, Acknowledgment ack);
+}
@@ -0,0 +1,8 @@
+package com.learn.exchange.messaging;
+
+// 确认一批消息已处理完成，之后才提交该批的消费位置，可在消费线程之外调用
+@FunctionalInterface
+public interface Acknowledgment {
+
+    void acknowledge();
+}
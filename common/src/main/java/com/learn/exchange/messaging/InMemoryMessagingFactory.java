@@ -0,0 +1,130 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.support.LoggerSupport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// 进程内的消息实现：定序、撮合等部署在同一个 JVM 时使用
+// 消息对象按引用直接交给消费线程，不做序列化，也不经过网络
+// 与 Kafka 语义一致：每个消费组都收到 Topic 的全部消息，同一消费组内的多个消费者竞争消费
+// 注意：消息不持久化，消费组订阅之前发送的消息会被丢弃(相当于 auto-offset-reset=latest)
+// 处理失败时与 mmap 实现一致：间隔 RETRY_BACKOFF_MILLIS 重新投递同一批，超过 MAX_RETRIES 次后跳过
+@Component
+@ConditionalOnProperty(prefix = "exchange.config", name = "messaging", havingValue = "memory")
+public class InMemoryMessagingFactory extends LoggerSupport implements MessagingFactory {
+
+    static final int MAX_RETRIES = 9;
+    static final long RETRY_BACKOFF_MILLIS = 100;
+
+    final int batchSize;
+    final int capacity;
+
+    // Topic -> (groupId -> 该消费组的消息队列)
+    final ConcurrentMap<Messaging.Topic, ConcurrentMap<String, BlockingQueue<AbstractMessage>>> topicGroups =
+            new ConcurrentHashMap<>();
+
+    public InMemoryMessagingFactory(
+            @Value("${spring.kafka.consumer.max-poll-records:500}") int batchSize,
+            @Value("${exchange.config.memory-queue-capacity:1000000}") int capacity) {
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        logger.info("init in-memory messaging, batch-size: {}, queue capacity: {}", batchSize, capacity);
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+            Messaging.Topic topic, Class<T> messageClass) {
+        logger.info("try create in-memory message producer for topic: {}", topic);
+        final Collection<BlockingQueue<AbstractMessage>> groups = groupsOf(topic).values();
+        return new MessageProducer<T>() {
+            @Override
+            public void sendMessage(T message) {
+                for(BlockingQueue<AbstractMessage> queue : groups)
+                    put(queue, message);
+            }
+
+            @Override
+            public void sendMessages(List<T> messages) {
+                for(BlockingQueue<AbstractMessage> queue : groups) {
+                    for(T message : messages)
+                        put(queue, message);
+                }
+            }
+        };
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
+        logger.info("try create in-memory batch message listener for topic {}: group Id = {}...", topic, groupId);
+        BlockingQueue<AbstractMessage> queue = groupsOf(topic).computeIfAbsent(groupId,
+                k -> new LinkedBlockingQueue<>(this.capacity));
+        Thread thread = new Thread(() -> consume(queue, messageHandler),
+                "memory-consumer-" + topic.name().toLowerCase() + "-" + groupId);
+        thread.start();
+        return thread::interrupt;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends AbstractMessage> void consume(BlockingQueue<AbstractMessage> queue, BatchMessageHandler<T> handler) {
+        for(;;) {
+            List<AbstractMessage> messages = new ArrayList<>();
+            try {
+                // 阻塞等待第一条消息，再取出已到达的消息凑成一批
+                messages.add(queue.take());
+            }catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(messages, this.batchSize - 1);
+            if(!process(messages, handler))
+                break;
+        }
+        logger.warn("{} was interrupted.", Thread.currentThread().getName());
+    }
+
+    // 处理一批消息，失败时重新投递同一批；返回 false 表示等待重试时被中断
+    @SuppressWarnings("unchecked")
+    <T extends AbstractMessage> boolean process(List<AbstractMessage> messages, BatchMessageHandler<T> handler) {
+        for(int retries = 0; ; retries++) {
+            try {
+                handler.processMessages((List<T>) (List<?>) messages);
+                return true;
+            }catch (Exception e) {
+                if(retries >= MAX_RETRIES) {
+                    logger.error("process {} messages failed after {} retries, skip them.", messages.size(), retries, e);
+                    return true;
+                }
+                logger.warn("process {} messages failed, retry {}/{}.", messages.size(), retries + 1, MAX_RETRIES, e);
+            }
+            try {
+                Thread.sleep(RETRY_BACKOFF_MILLIS);
+            }catch (InterruptedException e) {
+                return false;
+            }
+        }
+    }
+
+    ConcurrentMap<String, BlockingQueue<AbstractMessage>> groupsOf(Messaging.Topic topic) {
+        return this.topicGroups.computeIfAbsent(topic, k -> new ConcurrentHashMap<>());
+    }
+
+    private void put(BlockingQueue<AbstractMessage> queue, AbstractMessage message) {
+        try {
+            // 队列满时阻塞发送方，形成背压
+            queue.put(message);
+        }catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted when send message.", e);
+        }
+    }
+}
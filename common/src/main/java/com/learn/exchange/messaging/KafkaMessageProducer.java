@@ -0,0 +1,100 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.support.LoggerSupport;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 批量发送: 先序列化整批再连续 send，由 Kafka producer 合并为请求，按批报告完成和失败
+class KafkaMessageProducer<T extends AbstractMessage> extends LoggerSupport implements MessageProducer<T> {
+
+    final String topic;
+    final KafkaTemplate<String, String> kafkaTemplate;
+    final MessageTypes messageTypes;
+    // 每批发送后 flush，避免最后几条消息等待 linger.ms
+    final boolean flushOnBatch;
+    // 固定发送的分区，null 表示由 Kafka 选择
+    final Integer partition;
+
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicLong failed = new AtomicLong();
+
+    KafkaMessageProducer(String topic, KafkaTemplate<String, String> kafkaTemplate, MessageTypes messageTypes,
+                         boolean flushOnBatch, Integer partition) {
+        this.topic = topic;
+        this.kafkaTemplate = kafkaTemplate;
+        this.messageTypes = messageTypes;
+        this.flushOnBatch = flushOnBatch;
+        this.partition = partition;
+    }
+
+    @Override
+    public void sendMessage(T message) {
+        sendMessagesAsync(List.of(message));
+    }
+
+    @Override
+    public void sendMessages(List<T> messages) {
+        sendMessagesAsync(messages);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendMessagesAsync(List<T> messages) {
+        return sendMessagesAsync(messages, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendMessagesAsync(List<T> messages, List<String> jsons) {
+        int size = messages.size();
+        if(size == 0)
+            return CompletableFuture.completedFuture(null);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[size];
+        int sent = 0;
+        try {
+            String[] data = new String[size];
+            for(int i = 0; i < size; i++)
+                data[i] = jsons == null ? this.messageTypes.serialize(messages.get(i))
+                        : this.messageTypes.serialize(messages.get(i), jsons.get(i));
+            for(; sent < size; sent++) {
+                CompletableFuture<?> future = send(data[sent]);
+                // send 返回后才计入 in-flight，同步抛出异常时不会残留计数
+                this.inFlight.incrementAndGet();
+                futures[sent] = future.whenComplete((result, e) -> {
+                    this.inFlight.decrementAndGet();
+                    if(e != null)
+                        this.failed.incrementAndGet();
+                });
+            }
+            if(this.flushOnBatch)
+                this.kafkaTemplate.flush();
+        } catch (Exception e) {
+            // 如 buffer 已满等待超时或序列化失败，未发送的消息计为失败
+            this.failed.addAndGet(size - sent);
+            logger.warn("send {} of {} messages to {} failed: {}", size - sent, size, this.topic, e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.allOf(futures).whenComplete((result, e) -> {
+            if(e != null)
+                logger.warn("send batch of {} messages to {} failed: {}", size, this.topic, e.getMessage());
+        });
+    }
+
+    private CompletableFuture<?> send(String data) {
+        return this.partition == null ? this.kafkaTemplate.send(this.topic, data)
+                : this.kafkaTemplate.send(this.topic, this.partition, null, data);
+    }
+
+    @Override
+    public int getInFlightMessages() {
+        return this.inFlight.get();
+    }
+
+    @Override
+    public long getFailedMessages() {
+        return this.failed.get();
+    }
+}
@@ -0,0 +1,240 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.support.LoggerSupport;
+import jakarta.annotation.PostConstruct;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerEndpoint;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.TopicPartitionOffset;
+import org.springframework.kafka.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+// 基于 Kafka 的消息实现，默认启用
+@Component
+@ConditionalOnProperty(prefix = "exchange.config", name = "messaging", havingValue = "kafka", matchIfMissing = true)
+public class KafkaMessagingFactory extends LoggerSupport implements MessagingFactory {
+
+    @Autowired
+    private MessageTypes messageTypes;
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+    @Autowired
+    private ConcurrentKafkaListenerContainerFactory<String, String> listenerContainerFactory;
+    @Autowired
+    private KafkaAdmin kafkaAdmin;
+    @Autowired
+    private KafkaTopicProperties topicProperties;
+
+    @PostConstruct
+    public void init() throws InterruptedException, ExecutionException {
+        logger.info("init kafka admin...");
+        try(AdminClient client = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
+            Set<String> allTopics = client.listTopics().names().get();
+            // 创建 Topic，已存在但分区数少于配置时增加分区
+            List<NewTopic> newTopics = new ArrayList<>();
+            Map<String, NewPartitions> morePartitions = new HashMap<>();
+            for(Messaging.Topic topic : Messaging.Topic.values()) {
+                int partitions = topicProperties.getPartitions(topic);
+                if(!allTopics.contains(topic.name())) {
+                    newTopics.add(new NewTopic(topic.name(), partitions, (short) 1));
+                    continue;
+                }
+                int existing = client.describeTopics(List.of(topic.name())).allTopicNames().get()
+                        .get(topic.name()).partitions().size();
+                if(existing < partitions)
+                    morePartitions.put(topic.name(), NewPartitions.increaseTo(partitions));
+            }
+            if(!morePartitions.isEmpty()) {
+                client.createPartitions(morePartitions).all().get();
+                morePartitions.forEach((name, p) ->
+                        logger.warn("increase partitions of kafka topic {} to {}", name, p.totalCount()));
+            }
+            if(!newTopics.isEmpty()) {
+                client.createTopics(newTopics);
+                newTopics.forEach(t ->
+                        logger.warn("auto-create kafka topic when init MessageFactory: {}", t));
+            }
+        }
+        logger.info("init MessagingFactory ok.");
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+            Messaging.Topic topic, Class<T> messageClass) {
+        logger.info("try create message producer for topic: {}", topic);
+        KafkaTopicProperties.TopicProducer config = topicProperties.getTopicProducer(topic);
+        if(config == null)
+            return new KafkaMessageProducer<>(topic.name(), kafkaTemplate, messageTypes, false, null);
+        // 按 topic 配置使用独立的 producer
+        logger.info("create kafka producer for topic {} with overrides: {}, flush on batch: {}, partition: {}",
+                topic, config.toConfigOverrides(), config.isFlushOnBatch(), config.getPartition());
+        KafkaTemplate<String, String> template = config.toConfigOverrides().isEmpty() ? kafkaTemplate
+                : new KafkaTemplate<>(kafkaTemplate.getProducerFactory(), config.toConfigOverrides());
+        return new KafkaMessageProducer<>(topic.name(), template, messageTypes, config.isFlushOnBatch(),
+                config.getPartition());
+    }
+
+    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler, CommonErrorHandler errorHandler) {
+        return createListener(topic, groupId, new BatchMessageListener<String, String>() {
+            @Override
+            public void onMessage(List<ConsumerRecord<String, String>> data) {
+                messageHandler.processMessages(deserialize(data));
+            }
+        }, false, errorHandler);
+    }
+
+    // AckMode.MANUAL：ack 可在其他线程调用，由消费线程在下次 poll 前按顺序提交
+    @Override
+    public <T extends AbstractMessage> MessageConsumer createAcknowledgingBatchMessageListener(
+            Messaging.Topic topic, String groupId, AcknowledgingBatchMessageHandler<T> messageHandler) {
+        return createListener(topic, groupId, new BatchAcknowledgingMessageListener<String, String>() {
+            @Override
+            public void onMessage(List<ConsumerRecord<String, String>> data,
+                                  org.springframework.kafka.support.Acknowledgment acknowledgment) {
+                messageHandler.processMessages(deserialize(data), acknowledgment::acknowledge);
+            }
+        }, true, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AbstractMessage> List<T> deserialize(List<ConsumerRecord<String, String>> data) {
+        List<T> messages = new ArrayList<>(data.size());
+        for(ConsumerRecord<String, String> record : data) {
+            AbstractMessage message = messageTypes.deserialize(record.value());
+            messages.add((T) message);
+        }
+        return messages;
+    }
+
+    private MessageConsumer createListener(Messaging.Topic topic, String groupId, Object listener,
+                                           boolean manualAck, CommonErrorHandler errorHandler) {
+        logger.info("try create batch message listener for topic {}: group Id = {}...", topic, groupId);
+        KafkaTopicProperties.TopicConsumer config = topicProperties.getTopicConsumer(topic);
+        // 配置了分区时直接分配，由配置静态决定哪个实例处理哪些分区
+        TopicPartitionOffset[] assigned = config == null || config.getPartitions().isEmpty() ? null
+                : config.getPartitions().stream().map(p -> new TopicPartitionOffset(topic.name(), p))
+                .toArray(TopicPartitionOffset[]::new);
+        int concurrency = config == null || config.getConcurrency() == null ? topic.getConcurrency()
+                : config.getConcurrency();
+        // 交易引擎单线程处理 TRADE，多个消费线程会并发调用引擎
+        if(topic == Messaging.Topic.TRADE && concurrency != 1)
+            throw new IllegalArgumentException("concurrency of TRADE consumer must be 1 but was " + concurrency);
+        if(assigned != null)
+            logger.info("assign partitions {} of topic {} with concurrency {}.", config.getPartitions(), topic, concurrency);
+        ConcurrentMessageListenerContainer<String, String> listenerContainer =
+                listenerContainerFactory.createListenerContainer(new KafkaListenerEndpointAdapter() {
+                    @Override
+                    public String getGroupId() {
+                        return groupId;
+                    }
+
+                    @Override
+                    public Collection<String> getTopics() {
+                        return assigned == null ? List.of(topic.name()) : List.of();
+                    }
+
+                    @Override
+                    public TopicPartitionOffset[] getTopicPartitionsToAssign() {
+                        return assigned;
+                    }
+
+                    @Override
+                    public Integer getConcurrency() {
+                        return concurrency;
+                    }
+                });
+        if(manualAck)
+            listenerContainer.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        listenerContainer.setupMessageListener(listener);
+        if(errorHandler != null)
+            listenerContainer.setCommonErrorHandler(errorHandler);
+        listenerContainer.start();
+        return listenerContainer::stop;
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
+        return createBatchMessageListener(topic, groupId, messageHandler, null);
+    }
+}
+
+class KafkaListenerEndpointAdapter implements KafkaListenerEndpoint {
+
+    @Override
+    public String getId() {
+        return null;
+    }
+
+    @Override
+    public String getGroupId() {
+        return null;
+    }
+
+    @Override
+    public String getGroup() {
+        return null;
+    }
+
+    @Override
+    public Collection<String> getTopics() {
+        return List.of();
+    }
+
+    @Override
+    public TopicPartitionOffset[] getTopicPartitionsToAssign() {
+        return null;
+    }
+
+    @Override
+    public Pattern getTopicPattern() {
+        return null;
+    }
+
+    @Override
+    public String getClientIdPrefix() {
+        return null;
+    }
+
+    @Override
+    public Integer getConcurrency() {
+        return Integer.valueOf(1);
+    }
+
+    @Override
+    public Boolean getAutoStartup() {
+        return Boolean.FALSE;
+    }
+
+    @Override
+    public void setupListenerContainer(MessageListenerContainer listenerContainer, MessageConverter messageConverter) {}
+
+    @Override
+    public boolean isSplitIterables() {
+        return false;
+    }
+}
\ No newline at end of file
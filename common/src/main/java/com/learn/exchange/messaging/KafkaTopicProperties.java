@@ -0,0 +1,146 @@
+package com.learn.exchange.messaging;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 按 topic 调整分区数、producer 和 consumer，key 为小写的 topic 名称，如:
+// exchange.config.kafka.partitions.trade: 4
+// exchange.config.kafka.producer.tick.linger-ms: 5
+// exchange.config.kafka.consumer.trade.partitions: 0,1
+@Configuration
+@ConfigurationProperties("exchange.config.kafka")
+@ConditionalOnProperty(prefix = "exchange.config", name = "messaging", havingValue = "kafka", matchIfMissing = true)
+public class KafkaTopicProperties {
+    private Map<String, Integer> partitions = new HashMap<>();
+    private Map<String, TopicProducer> producer = new HashMap<>();
+    private Map<String, TopicConsumer> consumer = new HashMap<>();
+
+    public Map<String, Integer> getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(Map<String, Integer> partitions) {
+        this.partitions = partitions;
+    }
+
+    public Map<String, TopicProducer> getProducer() {
+        return producer;
+    }
+
+    public void setProducer(Map<String, TopicProducer> producer) {
+        this.producer = producer;
+    }
+
+    public Map<String, TopicConsumer> getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(Map<String, TopicConsumer> consumer) {
+        this.consumer = consumer;
+    }
+
+    // 未配置时使用 Messaging.Topic 中的默认分区数
+    public int getPartitions(Messaging.Topic topic) {
+        Integer n = this.partitions.get(topic.name().toLowerCase());
+        return n == null ? topic.getPartitions() : n;
+    }
+
+    public TopicProducer getTopicProducer(Messaging.Topic topic) {
+        return this.producer.get(topic.name().toLowerCase());
+    }
+
+    public TopicConsumer getTopicConsumer(Messaging.Topic topic) {
+        return this.consumer.get(topic.name().toLowerCase());
+    }
+
+    public static class TopicProducer {
+        private Integer lingerMs;
+        private Integer batchSize;
+        private String compressionType;
+        private boolean flushOnBatch = false;
+        // 固定发送到的分区，未设置时由 Kafka 选择
+        private Integer partition;
+
+        // 覆盖默认 producer 的配置，未设置的保持默认
+        public Map<String, Object> toConfigOverrides() {
+            Map<String, Object> configs = new HashMap<>();
+            if(lingerMs != null)
+                configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+            if(batchSize != null)
+                configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+            if(compressionType != null)
+                configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+            return configs;
+        }
+
+        public Integer getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(Integer lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public Integer getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(Integer batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public String getCompressionType() {
+            return compressionType;
+        }
+
+        public void setCompressionType(String compressionType) {
+            this.compressionType = compressionType;
+        }
+
+        public boolean isFlushOnBatch() {
+            return flushOnBatch;
+        }
+
+        public void setFlushOnBatch(boolean flushOnBatch) {
+            this.flushOnBatch = flushOnBatch;
+        }
+
+        public Integer getPartition() {
+            return partition;
+        }
+
+        public void setPartition(Integer partition) {
+            this.partition = partition;
+        }
+    }
+
+    public static class TopicConsumer {
+        // 消费线程数，未设置时使用 Messaging.Topic 中的默认值；TRADE 只能为 1
+        private Integer concurrency;
+        // 直接分配的分区，不参与消费组的 rebalance；为空时按消费组订阅整个 topic
+        private List<Integer> partitions = new ArrayList<>();
+
+        public Integer getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(Integer concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public List<Integer> getPartitions() {
+            return partitions;
+        }
+
+        public void setPartitions(List<Integer> partitions) {
+            this.partitions = partitions;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.support.LoggerSupport;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+
+// 基于内存映射文件的消息实现：定序、撮合、行情等进程部署在同一台主机时使用
+// 生产者追加写入段文件，消费者各自保存消费位置并持续读取文件尾部，无需 Broker
+// 段文件不会自动删除，可作为持久化的事件日志用于回放
+@Component
+@ConditionalOnProperty(prefix = "exchange.config", name = "messaging", havingValue = "mmap")
+public class MappedFileMessagingFactory extends LoggerSupport implements MessagingFactory {
+
+    // 无消息时先自旋，再逐步退避到 park
+    static final int SPIN_TRIES = 1000;
+    static final long PARK_NANOS = 50_000;
+    // 处理失败时从上次提交的位置重试，超过次数后跳过该批次(与 Kafka 默认的错误处理一致)
+    static final int MAX_RETRIES = 9;
+    static final long RETRY_BACKOFF_MILLIS = 100;
+
+    final MessageTypes messageTypes;
+    final Path baseDir;
+    final int segmentSize;
+    final int batchSize;
+    final boolean fromEarliest;
+
+    final ConcurrentMap<Messaging.Topic, MappedTopicLog.Writer> writers = new ConcurrentHashMap<>();
+    final List<Thread> readerThreads = new ArrayList<>();
+
+    public MappedFileMessagingFactory(
+            @Autowired MessageTypes messageTypes,
+            @Value("${exchange.config.mmap.dir:./data/mmap}") String dir,
+            @Value("${exchange.config.mmap.segment-size:268435456}") int segmentSize,
+            @Value("${spring.kafka.consumer.max-poll-records:500}") int batchSize,
+            @Value("${spring.kafka.consumer.auto-offset-reset:latest}") String offsetReset) {
+        this.messageTypes = messageTypes;
+        this.baseDir = Path.of(dir).toAbsolutePath();
+        this.segmentSize = segmentSize;
+        this.batchSize = batchSize;
+        this.fromEarliest = "earliest".equals(offsetReset);
+        logger.info("init mmap messaging at {}, segment-size: {}, batch-size: {}, offset-reset: {}",
+                baseDir, segmentSize, batchSize, offsetReset);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (readerThreads) {
+            readerThreads.forEach(Thread::interrupt);
+        }
+        for(MappedTopicLog.Writer writer : writers.values()) {
+            try {
+                writer.close();
+            }catch (IOException e) {
+                logger.warn("close writer failed: {}", writer.topicDir, e);
+            }
+        }
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+            Messaging.Topic topic, Class<T> messageClass) {
+        logger.info("try create mmap message producer for topic: {}", topic);
+        MappedTopicLog.Writer writer = writers.computeIfAbsent(topic,
+                t -> new MappedTopicLog.Writer(baseDir.resolve(t.name()), segmentSize));
+        return message -> writer.append(messageTypes.serialize(message).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
+        return createListener(topic, groupId,
+                (List<T> messages, Acknowledgment ack) -> messageHandler.processMessages(messages), false);
+    }
+
+    // 处理器返回后只推进重试位置，ack 时才写入消费位置
+    @Override
+    public <T extends AbstractMessage> MessageConsumer createAcknowledgingBatchMessageListener(
+            Messaging.Topic topic, String groupId, AcknowledgingBatchMessageHandler<T> messageHandler) {
+        return createListener(topic, groupId, messageHandler, true);
+    }
+
+    private <T extends AbstractMessage> MessageConsumer createListener(
+            Messaging.Topic topic, String groupId, AcknowledgingBatchMessageHandler<T> messageHandler, boolean manualAck) {
+        logger.info("try create mmap batch message listener for topic {}: group Id = {}...", topic, groupId);
+        MappedTopicLog.Reader reader = new MappedTopicLog.Reader(baseDir.resolve(topic.name()), segmentSize,
+                groupId, fromEarliest);
+        Thread thread = new Thread(() -> consume(reader, messageHandler, manualAck),
+                "mmap-consumer-" + topic.name().toLowerCase() + "-" + groupId);
+        synchronized (readerThreads) {
+            readerThreads.add(thread);
+        }
+        thread.start();
+        return thread::interrupt;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends AbstractMessage> void consume(MappedTopicLog.Reader reader, AcknowledgingBatchMessageHandler<T> handler,
+                                             boolean manualAck) {
+        int idle = 0;
+        int retries = 0;
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                List<T> messages = new ArrayList<>();
+                int polled = 0;
+                while(polled < batchSize) {
+                    byte[] data = reader.poll();
+                    if(data == null)
+                        break;
+                    polled++;
+                    String s = new String(data, StandardCharsets.UTF_8);
+                    try {
+                        messages.add((T) messageTypes.deserialize(s));
+                    }catch (Exception e) {
+                        // 无法解析的记录记录日志后跳过
+                        logger.error("skip invalid message: {}", s, e);
+                    }
+                }
+                if(polled == 0) {
+                    if(idle < SPIN_TRIES) {
+                        idle++;
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    }
+                    continue;
+                }
+                idle = 0;
+                if(!messages.isEmpty()) {
+                    long offset = reader.offset();
+                    try {
+                        handler.processMessages(messages, () -> reader.persist(offset));
+                    }catch (Exception e) {
+                        if(retries < MAX_RETRIES) {
+                            retries++;
+                            logger.warn("process {} messages failed, retry {}/{}.", messages.size(), retries, MAX_RETRIES, e);
+                            reader.rewind();
+                            Thread.sleep(RETRY_BACKOFF_MILLIS);
+                            continue;
+                        }
+                        logger.error("process {} messages failed after {} retries, skip them.", messages.size(), retries, e);
+                    }
+                }
+                retries = 0;
+                if(manualAck)
+                    reader.mark();
+                else
+                    reader.commit();
+            }
+        }catch (InterruptedException e) {
+            // 停止消费
+        }finally {
+            try {
+                reader.close();
+            }catch (IOException e) {
+                logger.warn("close reader failed: {}", reader.topicDir, e);
+            }
+        }
+        logger.warn("{} was interrupted.", Thread.currentThread().getName());
+    }
+}
@@ -0,0 +1,251 @@
+package com.learn.exchange.messaging;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+// 一个 Topic 对应一个目录，消息按顺序追加到固定大小的内存映射段文件:
+//   <dir>/<TOPIC>/00000000000000000000.log, 00000000000000000001.log, ...
+// 每条记录按 8 字节对齐: [int length][int 保留][payload]
+//   length > 0: 已写入的记录; length == 0: 尚未写入; length == -1: 本段结束，继续读下一段
+// 写入方先写 payload，再以 release 语义写 length；读取方以 acquire 语义读 length，保证读到完整记录
+final class MappedTopicLog {
+
+    static final int HEADER_SIZE = 8;
+    static final int END_OF_SEGMENT = -1;
+
+    static final VarHandle INT_HANDLE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    static final VarHandle LONG_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    static int align(int n) {
+        return (n + 7) & ~7;
+    }
+
+    static Path segmentFile(Path topicDir, long segment) {
+        return topicDir.resolve(String.format("%020d.log", segment));
+    }
+
+    // 目录中最小/最大的段编号，没有段文件时返回 -1
+    static long findSegment(Path topicDir, boolean last) {
+        if(!Files.isDirectory(topicDir))
+            return -1;
+        try(Stream<Path> files = Files.list(topicDir)) {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .mapToLong(name -> Long.parseLong(name.substring(0, name.length() - 4)))
+                    .reduce((a, b) -> last ? Math.max(a, b) : Math.min(a, b))
+                    .orElse(-1);
+        }catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static MappedByteBuffer map(Path file, int size) {
+        try(RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if(raf.length() < size)
+                raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }catch (IOException e) {
+            throw new UncheckedIOException("map file failed: " + file, e);
+        }
+    }
+
+    // 从 position 开始找到第一个未写入的位置
+    static int scanEnd(MappedByteBuffer buffer, int position) {
+        for(;;) {
+            int length = (int) INT_HANDLE.getAcquire(buffer, position);
+            if(length <= 0)
+                return position;
+            position += align(HEADER_SIZE + length);
+        }
+    }
+
+    // 追加写入，同一 Topic 在同一台主机上只允许一个写入进程(通过文件锁保证)
+    static final class Writer implements AutoCloseable {
+        final Path topicDir;
+        final int segmentSize;
+        final RandomAccessFile lockFile;
+        final FileLock lock;
+
+        long segment;
+        MappedByteBuffer buffer;
+        int position;
+
+        Writer(Path topicDir, int segmentSize) {
+            this.topicDir = topicDir;
+            this.segmentSize = segmentSize;
+            try {
+                Files.createDirectories(topicDir);
+                this.lockFile = new RandomAccessFile(topicDir.resolve("writer.lock").toFile(), "rw");
+                this.lock = lockFile.getChannel().tryLock();
+            }catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if(this.lock == null)
+                throw new IllegalStateException("topic is written by another process: " + topicDir);
+            long last = findSegment(topicDir, true);
+            this.segment = Math.max(last, 0);
+            this.buffer = map(segmentFile(topicDir, segment), segmentSize);
+            this.position = scanEnd(buffer, 0);
+            if((int) INT_HANDLE.getAcquire(buffer, position) == END_OF_SEGMENT)
+                roll();
+        }
+
+        synchronized void append(byte[] payload) {
+            int size = align(HEADER_SIZE + payload.length);
+            if(size > segmentSize - HEADER_SIZE)
+                throw new IllegalArgumentException("message too large: " + payload.length + " bytes.");
+            // 始终为结束标记保留位置
+            if(position + size > segmentSize - HEADER_SIZE) {
+                roll();
+            }
+            buffer.put(position + HEADER_SIZE, payload);
+            INT_HANDLE.setRelease(buffer, position, payload.length);
+            position += size;
+        }
+
+        // 先创建下一段文件，再写结束标记，读取方看到标记时下一段一定已存在
+        private void roll() {
+            MappedByteBuffer next = map(segmentFile(topicDir, segment + 1), segmentSize);
+            INT_HANDLE.setRelease(buffer, position, END_OF_SEGMENT);
+            this.segment++;
+            this.buffer = next;
+            this.position = 0;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            buffer.force();
+            lock.release();
+            lockFile.close();
+        }
+    }
+
+    // 读取方，消费位置保存在 <groupId>.offset 中: 段编号(高24位) + 段内位置(低40位)
+    // 同一消费组只允许一个读取方(通过 <groupId>.lock 文件锁保证)，不支持组内多个消费者分摊
+    static final class Reader implements AutoCloseable {
+        final Path topicDir;
+        final int segmentSize;
+        final RandomAccessFile lockFile;
+        final FileLock lock;
+        final MappedByteBuffer offsetBuffer;
+
+        long segment;
+        MappedByteBuffer buffer;
+        int position;
+        // 最近一次提交的位置
+        long committed;
+
+        Reader(Path topicDir, int segmentSize, String groupId, boolean fromEarliest) {
+            this.topicDir = topicDir;
+            this.segmentSize = segmentSize;
+            FileLock fileLock;
+            try {
+                Files.createDirectories(topicDir);
+                this.lockFile = new RandomAccessFile(topicDir.resolve(groupId + ".lock").toFile(), "rw");
+                try {
+                    fileLock = lockFile.getChannel().tryLock();
+                }catch (OverlappingFileLockException e) {
+                    // 同一进程内已有该消费组的读取方
+                    fileLock = null;
+                }
+                if(fileLock == null)
+                    lockFile.close();
+            }catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if(fileLock == null)
+                throw new IllegalStateException("consumer group " + groupId + " is already consuming " + topicDir);
+            this.lock = fileLock;
+            Path offsetFile = topicDir.resolve(groupId + ".offset");
+            boolean exist = Files.exists(offsetFile);
+            this.offsetBuffer = map(offsetFile, 8);
+            if(exist) {
+                long offset = (long) LONG_HANDLE.getVolatile(offsetBuffer, 0);
+                this.segment = offset >>> 40;
+                this.position = (int) (offset & 0xff_ffff_ffffL);
+                this.committed = offset;
+            } else {
+                long seg = findSegment(topicDir, !fromEarliest);
+                this.segment = Math.max(seg, 0);
+                this.position = 0;
+                if(seg >= 0 && !fromEarliest)
+                    this.position = scanEnd(map(segmentFile(topicDir, segment), segmentSize), 0);
+                commit();
+            }
+        }
+
+        // 读取下一条记录，没有新记录时返回 null
+        byte[] poll() {
+            for(;;) {
+                if(buffer == null) {
+                    Path file = segmentFile(topicDir, segment);
+                    if(!Files.exists(file))
+                        return null;
+                    buffer = map(file, segmentSize);
+                }
+                int length = (int) INT_HANDLE.getAcquire(buffer, position);
+                if(length == 0)
+                    return null;
+                if(length == END_OF_SEGMENT) {
+                    segment++;
+                    position = 0;
+                    buffer = null;
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(position + HEADER_SIZE, payload);
+                position += align(HEADER_SIZE + length);
+                return payload;
+            }
+        }
+
+        // 当前读取位置，格式与消费位置相同
+        long offset() {
+            return (segment << 40) | position;
+        }
+
+        void commit() {
+            mark();
+            persist(committed);
+        }
+
+        // 只更新重试时回退的位置，不写入消费位置
+        void mark() {
+            this.committed = offset();
+        }
+
+        // 写入消费位置，可在读取线程之外调用
+        void persist(long offset) {
+            LONG_HANDLE.setVolatile(offsetBuffer, 0, offset);
+        }
+
+        // 回到最近一次提交的位置，重新读取未提交的记录
+        void rewind() {
+            long seg = committed >>> 40;
+            if(seg != segment)
+                this.buffer = null;
+            this.segment = seg;
+            this.position = (int) (committed & 0xff_ffff_ffffL);
+        }
+
+        @Override
+        public void close() throws IOException {
+            lock.release();
+            lockFile.close();
+        }
+    }
+
+    private MappedTopicLog() {
+    }
+}
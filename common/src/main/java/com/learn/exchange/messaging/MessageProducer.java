@@ -3,6 +3,7 @@ package com.learn.exchange.messaging;
 import com.learn.exchange.message.AbstractMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @FunctionalInterface
 public interface MessageProducer<T extends AbstractMessage> {
@@ -13,4 +14,25 @@ public interface MessageProducer<T extends AbstractMessage> {
         for(T message: messages)
             sendMessage(message);
     }
+
+    // 异步发送一批消息，全部确认后完成，任一条失败时异常完成
+    default CompletableFuture<Void> sendMessagesAsync(List<T> messages) {
+        sendMessages(messages);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // jsons 为各消息已生成的 JSON，支持的生产者直接使用，不再重新序列化
+    default CompletableFuture<Void> sendMessagesAsync(List<T> messages, List<String> jsons) {
+        return sendMessagesAsync(messages);
+    }
+
+    // 已发送但未确认的消息数，可用于背压
+    default int getInFlightMessages() {
+        return 0;
+    }
+
+    // 发送失败的消息总数
+    default long getFailedMessages() {
+        return 0;
+    }
 }
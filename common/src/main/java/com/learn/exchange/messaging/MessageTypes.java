@@ -1,11 +1,13 @@
 package com.learn.exchange.messaging;
 
 import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.util.CompressUtil;
 import com.learn.exchange.util.JsonUtil;
 import jakarta.annotation.PostConstruct;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.core.type.classreading.MetadataReader;
@@ -27,6 +29,10 @@ public class MessageTypes {
 
     private static final char SEP = '#'; // separator
 
+    // 超过该长度的消息用 LZ4 压缩(0 不压缩)，反序列化总是识别压缩标记
+    @Value("${exchange.config.compression.min-size:0}")
+    int compressionMinSize = 0;
+
     @SuppressWarnings("unchecked")
     @PostConstruct
     public void init() {
@@ -60,12 +66,17 @@ public class MessageTypes {
     }
 
     public String serialize(AbstractMessage message) {
+        return serialize(message, JsonUtil.writeJson(message));
+    }
+
+    // 使用已生成的 JSON，避免同一条消息重复序列化
+    public String serialize(AbstractMessage message, String json) {
         String type = message.getClass().getName();
-        String json = JsonUtil.writeJson(message);
-        return type + "#" + json;
+        return CompressUtil.compress(type + "#" + json, this.compressionMinSize);
     }
 
     public AbstractMessage deserialize(String data) {
+        data = CompressUtil.decompress(data);
         int pos = data.indexOf("#");
         if(pos == -1)
             throw new RuntimeException("Unable to handle message with data: " + data);
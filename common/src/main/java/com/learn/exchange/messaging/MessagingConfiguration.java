@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
@@ -20,12 +21,18 @@ import java.util.Map;
 
 @EnableKafka
 @Configuration
+@ConditionalOnProperty(prefix = "exchange.config", name = "messaging", havingValue = "kafka", matchIfMissing = true)
 public class MessagingConfiguration {
     final Logger logger = LoggerFactory.getLogger(getClass());
 
+    // Kafka 批量压缩: none, lz4, zstd...，较大的消息已在 MessageTypes 中压缩
+    @Value("${exchange.config.compression.kafka-type:none}")
+    String kafkaCompressionType = "none";
+
     Map<String, Object> producerConfigs(String bootstrapServers) {
         Map<String, Object> configs = new HashMap<>();
         configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, this.kafkaCompressionType);
         configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         return configs;
@@ -76,7 +83,6 @@ public class MessagingConfiguration {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
-        factory.setConcurrency(Integer.valueOf(1));
         factory.setBatchListener(Boolean.TRUE);
         return factory;
     }
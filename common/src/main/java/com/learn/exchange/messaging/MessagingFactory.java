@@ -1,161 +1,23 @@
 package com.learn.exchange.messaging;
 
 import com.learn.exchange.message.AbstractMessage;
-import com.learn.exchange.support.LoggerSupport;
-import jakarta.annotation.PostConstruct;
-import org.apache.kafka.clients.admin.AdminClient;
-import org.apache.kafka.clients.admin.NewTopic;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
-import org.springframework.kafka.config.KafkaListenerEndpoint;
-import org.springframework.kafka.core.KafkaAdmin;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.listener.BatchMessageListener;
-import org.springframework.kafka.listener.CommonErrorHandler;
-import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
-import org.springframework.kafka.listener.MessageListenerContainer;
-import org.springframework.kafka.support.TopicPartitionOffset;
-import org.springframework.kafka.support.converter.MessageConverter;
-import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.regex.Pattern;
 
-@Component
-public class MessagingFactory extends LoggerSupport {
+// 消息收发的统一入口，由 exchange.config.messaging 选择实现:
+// kafka(默认) / memory(同一进程内传递对象引用)
+public interface MessagingFactory {
 
-    @Autowired
-    private MessageTypes messageTypes;
-    @Autowired
-    private KafkaTemplate<String, String> kafkaTemplate;
-    @Autowired
-    private ConcurrentKafkaListenerContainerFactory<String, String> listenerContainerFactory;
-    @Autowired
-    private KafkaAdmin kafkaAdmin;
+    <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+            Messaging.Topic topic, Class<T> messageClass);
 
-    @PostConstruct
-    public void init() throws InterruptedException, ExecutionException {
-        logger.info("init kafka admin...");
-        try(AdminClient client = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
-            Set<String> allTopics = client.listTopics().names().get();
-            // 创建 Topic
-            List<NewTopic> newTopics = new ArrayList<>();
-            for(Messaging.Topic topic : Messaging.Topic.values()) {
-                if(!allTopics.contains(topic.name()))
-                    newTopics.add(new NewTopic(topic.name(), topic.getPartitions(), (short) 1));
-            }
-            if(!newTopics.isEmpty()) {
-                client.createTopics(newTopics);
-                newTopics.forEach(t ->
-                        logger.warn("auto-create kafka topic when init MessageFactory: {}", t));
-            }
-        }
-        logger.info("init MessagingFactory ok.");
-    }
-
-    public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
-            Messaging.Topic topic, Class<T> messageClass) {
-        logger.info("try create message producer for topic: {}", topic);
-        final String name = topic.name();
-        return message -> kafkaTemplate.send(name, messageTypes.serialize(message));
-    }
-
-    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
-            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler, CommonErrorHandler errorHandler) {
-        logger.info("try create batch message listener for topic {}: group Id = {}...", topic, groupId);
-        ConcurrentMessageListenerContainer<String, String> listenerContainer =
-                listenerContainerFactory.createListenerContainer(new KafkaListenerEndpointAdapter() {
-                    @Override
-                    public String getGroupId() {
-                        return groupId;
-                    }
+    <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler);
 
-                    @Override
-                    public Collection<String> getTopics() {
-                        return List.of(topic.name());
-                    }
-                });
-        listenerContainer.setupMessageListener(new BatchMessageListener<String, String>() {
-            @SuppressWarnings("unchecked")
-            @Override
-            public void onMessage(List<ConsumerRecord<String, String>> data) {
-                List<T> messages = new ArrayList<>(data.size());
-                for(ConsumerRecord<String, String> record : data) {
-                    AbstractMessage message = messageTypes.deserialize(record.value());
-                    messages.add((T) message);
-                }
-                messageHandler.processMessages(messages);
-            }
-        });
-        if(errorHandler != null)
-            listenerContainer.setCommonErrorHandler(errorHandler);
-        listenerContainer.start();
-        return listenerContainer::stop;
-    }
-
-    public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
-            Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
-        return createBatchMessageListener(topic, groupId, messageHandler, null);
+    // 按 ack 提交消费位置，默认在处理器返回后提交，适用于不保存消费位置的实现
+    default <T extends AbstractMessage> MessageConsumer createAcknowledgingBatchMessageListener(
+            Messaging.Topic topic, String groupId, AcknowledgingBatchMessageHandler<T> messageHandler) {
+        return createBatchMessageListener(topic, groupId,
+                (List<T> messages) -> messageHandler.processMessages(messages, () -> {}));
     }
 }
-
-class KafkaListenerEndpointAdapter implements KafkaListenerEndpoint {
-
-    @Override
-    public String getId() {
-        return null;
-    }
-
-    @Override
-    public String getGroupId() {
-        return null;
-    }
-
-    @Override
-    public String getGroup() {
-        return null;
-    }
-
-    @Override
-    public Collection<String> getTopics() {
-        return List.of();
-    }
-
-    @Override
-    public TopicPartitionOffset[] getTopicPartitionsToAssign() {
-        return null;
-    }
-
-    @Override
-    public Pattern getTopicPattern() {
-        return null;
-    }
-
-    @Override
-    public String getClientIdPrefix() {
-        return null;
-    }
-
-    @Override
-    public Integer getConcurrency() {
-        return Integer.valueOf(1);
-    }
-
-    @Override
-    public Boolean getAutoStartup() {
-        return Boolean.FALSE;
-    }
-
-    @Override
-    public void setupListenerContainer(MessageListenerContainer listenerContainer, MessageConverter messageConverter) {}
-
-    @Override
-    public boolean isSplitIterables() {
-        return false;
-    }
-}
\ No newline at end of file
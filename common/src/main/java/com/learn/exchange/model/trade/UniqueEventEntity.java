@@ -0,0 +1,25 @@
+package com.learn.exchange.model.trade;
+
+import com.learn.exchange.model.support.EntitySupport;
+import jakarta.persistence.*;
+
+// 已定序事件的 uniqueId，用于去重，按用户区分: uniqueId 列保存 userId:uniqueId
+@Entity
+@Table(name = "unique_events", indexes = @Index(name = "IDX_SEQ", columnList = "sequenceId"))
+public class UniqueEventEntity implements EntitySupport {
+    @Id
+    @Column(nullable = false, updatable = false, length = VAR_CHAR_100)
+    public String uniqueId;
+
+    @Column(nullable = false, updatable = false)
+    public long sequenceId;
+
+    @Column(nullable = false, updatable = false)
+    public long createdAt;
+
+    @Override
+    public String toString() {
+        return "UniqueEventEntity [uniqueId=" + uniqueId + ", sequenceId=" + sequenceId + ", createdAt="
+                + createdAt + "]";
+    }
+}
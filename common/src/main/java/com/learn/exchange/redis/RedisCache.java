@@ -5,11 +5,57 @@ public interface RedisCache {
     public interface Topic {
         String TRADING_API_RESULT = "trading_api_result";
         String NOTIFICATION = "notification";
+        // orderbook 快照更新，广播给所有推送服务
+        String ORDER_BOOK = "orderbook";
+        // 最优买卖价变化，每次变化都发布，格式见 BestBidOfferBean.toMessage()
+        String BEST_BID_OFFER = "bbo";
+        // 交易引擎的状态摘要，主备实例比对用
+        String ENGINE_DIGEST = "engine_digest";
+
+        // 每个网关独立的结果频道，未指定网关时使用全局频道
+        static String tradingApiResult(String gatewayId) {
+            return gatewayId == null ? TRADING_API_RESULT : TRADING_API_RESULT + "_" + gatewayId;
+        }
+
+        // 用户通知按 userId 分片到 notification_<shard>
+        static String notification(int shard) {
+            return NOTIFICATION + "_" + shard;
+        }
+
+        // 指定档数的 orderbook 频道，完整深度使用 ORDER_BOOK
+        static String orderBook(int depth) {
+            return ORDER_BOOK + "_" + depth;
+        }
+
+        static int notificationShard(long userId, int shards) {
+            return (int) Math.floorMod(userId, (long) shards);
+        }
     }
 
     public interface Key {
         String ORDER_BOOK = "_orderbook_";
 
+        // 指定档数的 orderbook 快照，完整深度使用 ORDER_BOOK
+        static String orderBook(int depth) {
+            return ORDER_BOOK + depth + "_";
+        }
+
+        // 行情 Stream，entry id 为 sequenceId-0，消费者可从上次的 id 继续读取
+        String STREAM_ORDER_BOOK = "_stream_orderbook_";
+        String STREAM_BEST_BID_OFFER = "_stream_bbo_";
+        String STREAM_TICKS = "_stream_ticks_";
+
+        // Stream entry 中数据字段的名称
+        String STREAM_DATA_FIELD = "data";
+
+        // 各实例在同一 sequenceId 的状态摘要: instance -> digest
+        static String engineDigest(long sequenceId) {
+            return "_engine_digest_" + sequenceId;
+        }
+
+        // 交易引擎各输出通道已确认发布的 sequenceId: channel -> sequenceId
+        String ENGINE_PUBLISHED = "_engine_published_";
+
         String RECENT_TICKS = "_ticks_";
 
         String DAY_BARS = "_day_bars_";
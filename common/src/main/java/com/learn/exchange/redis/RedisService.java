@@ -1,11 +1,18 @@
 package com.learn.exchange.redis;
 
 import com.learn.exchange.util.ClassPathUtil;
+import com.learn.exchange.util.CompressUtil;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.Limit;
 import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XReadArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.api.sync.RedisCommands;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
 import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
@@ -16,11 +23,15 @@ import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 @Component
@@ -29,6 +40,12 @@ public class RedisService {
 
     final RedisClient redisClient;
 
+    static final Duration PIPELINE_TIMEOUT = Duration.ofSeconds(5);
+
+    // 写入 Redis 的数据超过该长度时用 LZ4 压缩(0 不压缩)，读取时总是识别压缩标记
+    @Value("${exchange.config.compression.min-size:0}")
+    int compressionMinSize = 0;
+
     final GenericObjectPool<StatefulRedisConnection<String, String>> redisConnectionPool;
 
     public RedisService(@Autowired RedisConfiguration redisConfig) {
@@ -88,17 +105,73 @@ public class RedisService {
                 commands.evalsha(sha, ScriptOutputType.BOOLEAN, keys, values));
     }
 
+    public Long executeScriptReturnLong(String sha, String[] keys, String[] values) {
+        return executeSync(commands ->
+                commands.evalsha(sha, ScriptOutputType.INTEGER, keys, values));
+    }
+
     public String executeScriptReturnString(String sha, String[] keys, String[] values) {
         return executeSync(commands ->
                 commands.evalsha(sha, ScriptOutputType.VALUE, keys, values));
     }
 
     public String get(String key) {
-        return executeSync(commands -> commands.get(key));
+        return CompressUtil.decompress(executeSync(commands -> commands.get(key)));
+    }
+    // 按配置压缩待保存的数据，用于 Lua 脚本等直接写入的场景
+    public String compress(String data) {
+        return CompressUtil.compress(data, this.compressionMinSize);
     }
     public void publish(String topic, String data) {
         executeSync(commands -> commands.publish(topic, data));
     }
+    // 使用 pipeline 批量发布: channel -> messages
+    public void publishAll(Map<String, List<String>> channelMessages) {
+        try(StatefulRedisConnection<String, String> conn = redisConnectionPool.borrowObject()) {
+            conn.setAutoFlushCommands(false);
+            try {
+                RedisAsyncCommands<String, String> commands = conn.async();
+                List<RedisFuture<Long>> futures = new ArrayList<>();
+                for(Map.Entry<String, List<String>> entry : channelMessages.entrySet()) {
+                    for(String message : entry.getValue())
+                        futures.add(commands.publish(entry.getKey(), message));
+                }
+                conn.flushCommands();
+                if(!LettuceFutures.awaitAll(PIPELINE_TIMEOUT, futures.toArray(new RedisFuture[0])))
+                    throw new RuntimeException("publish pipeline timeout.");
+            } finally {
+                conn.setAutoFlushCommands(true);
+            }
+        }catch (Exception e) {
+            logger.warn("publishAll redis failed.", e);
+            throw new RuntimeException(e);
+        }
+    }
+    // 从 fromId 之后读取最多 count 条，无数据时最多阻塞 blockMillis
+    public List<StreamMessage<String, String>> xread(String key, String fromId, long count, long blockMillis) {
+        return executeSync(commands -> commands.xread(XReadArgs.Builder.count(count).block(blockMillis),
+                XReadArgs.StreamOffset.from(key, fromId)));
+    }
+    // Stream 最后一条，为空时返回 null
+    public StreamMessage<String, String> xlast(String key) {
+        List<StreamMessage<String, String>> messages = executeSync(commands ->
+                commands.xrevrange(key, Range.create("-", "+"), Limit.create(0, 1)));
+        return messages.isEmpty() ? null : messages.getFirst();
+    }
+    // 写入 hash 的一个字段并设置过期时间，返回写入后的全部字段
+    public Map<String, String> hsetAndGetAll(String key, String field, String value, long ttlSeconds) {
+        return executeSync(commands -> {
+            commands.hset(key, field, value);
+            commands.expire(key, ttlSeconds);
+            return commands.hgetall(key);
+        });
+    }
+    public void hset(String key, String field, String value) {
+        executeSync(commands -> commands.hset(key, field, value));
+    }
+    public Map<String, String> hgetAll(String key) {
+        return executeSync(commands -> commands.hgetall(key));
+    }
     public List<String> lrange(String key, long start, long end) {
         return executeSync(commands ->
                 commands.lrange(key, start, end));
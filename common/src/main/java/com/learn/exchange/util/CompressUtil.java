@@ -0,0 +1,48 @@
+package com.learn.exchange.util;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// 超过阈值的字符串用 LZ4 frame 压缩后 Base64 编码，并加上前缀标记
+// 解压时按前缀判断，未压缩的数据原样返回，新旧生产者可以混用
+public class CompressUtil {
+
+    public static final String LZ4_PREFIX = "lz4:";
+
+    // minSize <= 0 表示不压缩，压缩后没有变小时也不压缩
+    public static String compress(String data, int minSize) {
+        if(minSize <= 0 || data == null || data.length() < minSize)
+            return data;
+        byte[] raw = data.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try(LZ4FrameOutputStream lz4 = new LZ4FrameOutputStream(output)) {
+            lz4.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String compressed = LZ4_PREFIX + Base64.getEncoder().encodeToString(output.toByteArray());
+        return compressed.length() < data.length() ? compressed : data;
+    }
+
+    public static String decompress(String data) {
+        if(!isCompressed(data))
+            return data;
+        byte[] compressed = Base64.getDecoder().decode(data.substring(LZ4_PREFIX.length()));
+        try(LZ4FrameInputStream lz4 = new LZ4FrameInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(lz4.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static boolean isCompressed(String data) {
+        return data != null && data.startsWith(LZ4_PREFIX);
+    }
+}
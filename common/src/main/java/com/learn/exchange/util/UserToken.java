@@ -0,0 +1,57 @@
+package com.learn.exchange.util;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+// 用户凭证: base64url(userId:expiresAt).base64url(HmacSHA256)
+// 由完成登录的服务使用相同的密钥签发，推送服务和交易 API 只校验签名和有效期
+public class UserToken {
+    static final String ALGORITHM = "HmacSHA256";
+
+    final SecretKeySpec key;
+
+    public UserToken(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    public String create(long userId, long expiresAt) {
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((userId + ":" + expiresAt).getBytes(StandardCharsets.UTF_8));
+        return payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+    }
+
+    // 校验通过返回 userId，否则返回 null
+    public Long verify(String token, long now) {
+        if(token == null)
+            return null;
+        int pos = token.indexOf('.');
+        if(pos <= 0)
+            return null;
+        String payload = token.substring(0, pos);
+        try {
+            byte[] signature = Base64.getUrlDecoder().decode(token.substring(pos + 1));
+            if(!MessageDigest.isEqual(sign(payload), signature))
+                return null;
+            String[] fields = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8).split(":");
+            if(fields.length != 2 || Long.parseLong(fields[1]) < now)
+                return null;
+            return Long.valueOf(fields[0]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(this.key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+--[[
+按sequenceId追加到有上限的Stream，entry id为 sequenceId-0:
+
+KEYS:
+  1: key: Stream的key
+
+ARGV:
+  1: maxLen: Stream保留的大致条数
+  2..: seqId, data: 依次为每条数据的SequenceId和内容
+
+]]--
+
+local key = KEYS[1]
+local maxLen = ARGV[1]
+local lastSeqId = 0
+local appended = 0
+
+-- 获取最后一条的sequenceId，重复或较旧的数据直接跳过:
+local last = redis.call('XREVRANGE', key, '+', '-', 'COUNT', 1)
+if #last > 0 then
+    lastSeqId = tonumber(string.match(last[1][1], '^(%d+)'))
+end
+
+for i = 2, #ARGV, 2 do
+    local seqId = tonumber(ARGV[i])
+    if seqId > lastSeqId then
+        redis.call('XADD', key, 'MAXLEN', '~', maxLen, ARGV[i] .. '-0', 'data', ARGV[i + 1])
+        lastSeqId = seqId
+        appended = appended + 1
+    end
+end
+
+return appended
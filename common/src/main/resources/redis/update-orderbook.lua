@@ -1,32 +1,40 @@
 --[[
-刷新OrderBook快照:
+刷新OrderBook快照，每个档位独立检查sequenceId:
 
 KEYS:
-  1: key: OrderBook快照的key
+  1..n: key: 各档位OrderBook快照的key
 
 ARGV:
   1: seqId: 本次的SequenceId
-  2: data: OrderBook快照的JSON数据
+  2..: data, channel, cache: 依次为每个key对应的快照JSON数据、发送通知的频道和
+       保存的数据(可能已压缩，为空时保存data)
 
 ]]--
 
 local KEY_LAST_SEQ = '_OBLastSeqId_'
-local key = KEYS[1]
 local seqId = ARGV[1]
-local data = ARGV[2]
+local updated = false
 
--- 获取上次更新的sequenceId:
-local lastSeqId = redis.call('GET', KEY_LAST_SEQ)
-
--- 如果sequenceId较新:
-if not lastSeqId or tonumber(seqId) > tonumber(lastSeqId) then
-    -- 保存新的sequenceId:
-    redis.call('SET', KEY_LAST_SEQ, seqId)
-    -- 保存OrderBook的JSON:
-    redis.call('SET', key, data)
-    -- 发送通知:
-    redis.call('PUBLISH', 'notification', '{"type":"orderbook","data":' .. data .. '}')
-    return true
+for i, key in ipairs(KEYS) do
+    local data = ARGV[i * 3 - 1]
+    local channel = ARGV[i * 3]
+    local cache = ARGV[i * 3 + 1]
+    if cache == '' then
+        cache = data
+    end
+    local lastSeqKey = KEY_LAST_SEQ .. key
+    -- 获取该档位上次更新的sequenceId:
+    local lastSeqId = redis.call('GET', lastSeqKey)
+    -- 如果sequenceId较新:
+    if not lastSeqId or tonumber(seqId) > tonumber(lastSeqId) then
+        -- 保存新的sequenceId:
+        redis.call('SET', lastSeqKey, seqId)
+        -- 保存OrderBook的JSON:
+        redis.call('SET', key, cache)
+        -- 发送通知:
+        redis.call('PUBLISH', channel, '{"type":"orderbook","data":' .. data .. '}')
+        updated = true
+    end
 end
 
-return false
+return updated
@@ -0,0 +1,11 @@
+package com.learn.exchange;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class SequencerApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(SequencerApplication.class, args);
+    }
+}
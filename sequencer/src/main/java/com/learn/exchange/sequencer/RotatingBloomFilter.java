@@ -0,0 +1,88 @@
+package com.learn.exchange.sequencer;
+
+import java.util.Arrays;
+
+// 分代轮换的布隆过滤器：当前代写满后丢弃最旧的一代，只记住最近的 key
+// 不会漏判，误判率约为每代的 fpp x 代数
+public class RotatingBloomFilter {
+
+    private final int generations;
+    private final long expectedInsertions;
+    private final int numBits;
+    private final int numHashes;
+
+    // bits[0] 为当前代
+    private final long[][] bits;
+    private long currentInsertions = 0;
+
+    public RotatingBloomFilter(int generations, long expectedInsertions, double fpp) {
+        if(generations < 1 || expectedInsertions < 1 || fpp <= 0 || fpp >= 1)
+            throw new IllegalArgumentException("invalid bloom filter arguments.");
+        this.generations = generations;
+        this.expectedInsertions = expectedInsertions;
+        // m = -n * ln(p) / (ln2)^2, k = m / n * ln2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        m = Math.min(Math.max(m, 64), Integer.MAX_VALUE - 63L);
+        this.numBits = (int) m;
+        this.numHashes = Math.max(1, (int) Math.round((double) m / expectedInsertions * Math.log(2)));
+        this.bits = new long[generations][(numBits + 63) / 64];
+    }
+
+    public boolean mightContain(String key) {
+        long hash = hash64(key);
+        for(long[] gen : this.bits) {
+            if(contains(gen, hash))
+                return true;
+        }
+        return false;
+    }
+
+    public void put(String key) {
+        if(this.currentInsertions >= this.expectedInsertions)
+            rotate();
+        long hash = hash64(key);
+        long[] gen = this.bits[0];
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= this.numHashes; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            gen[index >>> 6] |= 1L << index;
+        }
+        this.currentInsertions++;
+    }
+
+    // 最旧的一代清零后作为新的当前代
+    void rotate() {
+        long[] oldest = this.bits[this.generations - 1];
+        System.arraycopy(this.bits, 0, this.bits, 1, this.generations - 1);
+        Arrays.fill(oldest, 0L);
+        this.bits[0] = oldest;
+        this.currentInsertions = 0;
+    }
+
+    private boolean contains(long[] gen, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 1; i <= this.numHashes; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            if((gen[index >>> 6] & (1L << index)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // FNV-1a 64 位哈希后做一次 murmur3 fmix64 混淆
+    static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,62 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.messaging.Acknowledgment;
+import com.learn.exchange.messaging.MessageTypes;
+import com.learn.exchange.model.trade.EventEntity;
+import com.learn.exchange.model.trade.UniqueEventEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// 为一批原始请求分配连续的 sequenceId，只在定序线程中使用
+public class SequenceHandler {
+
+    final MessageTypes messageTypes;
+
+    // 最后分配的 sequenceId
+    private long sequence;
+    // 上一批的时间戳，保证 createdAt 不回退
+    private long lastTimestamp = 0;
+
+    public SequenceHandler(MessageTypes messageTypes, long lastSequenceId) {
+        this.messageTypes = messageTypes;
+        this.sequence = lastSequenceId;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    // 定序并生成待写入数据库的 EventEntity，同时修改传入的 event
+    public SequencedBatch sequence(List<AbstractEvent> messages, Acknowledgment ack) {
+        long now = Math.max(System.currentTimeMillis(), this.lastTimestamp);
+        this.lastTimestamp = now;
+        List<EventEntity> entities = new ArrayList<>(messages.size());
+        List<UniqueEventEntity> uniqueEvents = new ArrayList<>();
+        for(AbstractEvent message : messages) {
+            message.previousId = this.sequence;
+            message.sequenceId = ++this.sequence;
+            message.createdAt = now;
+            EventEntity entity = new EventEntity();
+            entity.sequenceId = message.sequenceId;
+            entity.previousId = message.previousId;
+            entity.data = this.messageTypes.serialize(message);
+            entity.createdAt = now;
+            entities.add(entity);
+            if(message.uniqueId != null) {
+                UniqueEventEntity unique = new UniqueEventEntity();
+                unique.uniqueId = UniqueIdFilter.uniqueKey(message);
+                unique.sequenceId = message.sequenceId;
+                unique.createdAt = now;
+                uniqueEvents.add(unique);
+            }
+        }
+        return new SequencedBatch(messages, entities, uniqueEvents, ack);
+    }
+
+    // ack 在写入数据库后调用，之后才提交这批原始请求的消费位置
+    public record SequencedBatch(List<AbstractEvent> events, List<EventEntity> entities,
+                                 List<UniqueEventEntity> uniqueEvents, Acknowledgment ack) {
+    }
+}
@@ -0,0 +1,223 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.message.ApiResultMessage;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.messaging.Acknowledgment;
+import com.learn.exchange.messaging.MessageConsumer;
+import com.learn.exchange.messaging.MessageProducer;
+import com.learn.exchange.messaging.MessageTypes;
+import com.learn.exchange.messaging.Messaging;
+import com.learn.exchange.messaging.MessagingFactory;
+import com.learn.exchange.model.trade.EventEntity;
+import com.learn.exchange.model.trade.UniqueEventEntity;
+import com.learn.exchange.redis.RedisCache;
+import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.support.LoggerSupport;
+import com.learn.exchange.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// 定序服务：消费 SEQUENCE 的原始请求，分配连续 id，批量写入数据库后发送到 TRADE
+// 消费线程负责定序，写库线程负责持久化和发送，第 N 批写库时第 N+1 批可同时定序
+// 每批写入数据库后由写库线程按顺序 ack，之后才提交 SEQUENCE 的 offset，已接收的请求不会丢失
+@Component
+public class SequenceService extends LoggerSupport {
+    private static final String GROUP_ID = "SequencerGroup";
+
+    @Autowired
+    MessagingFactory messagingFactory;
+    @Autowired
+    MessageTypes messageTypes;
+    @Autowired
+    SequenceStore sequenceStore;
+    @Autowired
+    RedisService redisService;
+
+    @Value("${exchange.config.sequencer.pipeline-depth:2}")
+    int pipelineDepth = 2;
+    @Value("${exchange.config.sequencer.max-batch-size:5000}")
+    int maxBatchSize = 5000;
+    // uniqueId 去重：布隆过滤器每代容量 / 每代误判率 / 精确 LRU 容量
+    @Value("${exchange.config.sequencer.unique-id.bloom-insertions:1000000}")
+    int bloomInsertions = 1000000;
+    @Value("${exchange.config.sequencer.unique-id.bloom-fpp:0.001}")
+    double bloomFpp = 0.001;
+    @Value("${exchange.config.sequencer.unique-id.lru-size:100000}")
+    int lruSize = 100000;
+
+    private UniqueIdFilter uniqueIdFilter;
+    private SequenceHandler sequenceHandler;
+    private BlockingQueue<SequenceHandler.SequencedBatch> pipeline;
+    private MessageProducer<AbstractEvent> producer;
+    private MessageConsumer consumer;
+    private Thread persistThread;
+    // 最后写入数据库的 sequenceId，只在写库线程中使用
+    private long lastPersistedSequenceId;
+
+    private volatile boolean crash = false;
+
+    @PostConstruct
+    public void init() {
+        long lastSequenceId = this.sequenceStore.getMaxSequenceId();
+        logger.info("start sequencer from sequenceId {}...", lastSequenceId);
+        this.uniqueIdFilter = new UniqueIdFilter(new RotatingBloomFilter(2, this.bloomInsertions, this.bloomFpp),
+                this.lruSize, this.sequenceStore::findExistingUniqueIds);
+        List<String> recentUniqueIds = this.sequenceStore.loadRecentUniqueIds(this.bloomInsertions);
+        // 按定序顺序加载，最新的留在 LRU 中
+        this.uniqueIdFilter.preload(recentUniqueIds.reversed());
+        logger.info("preloaded {} unique ids.", recentUniqueIds.size());
+        this.sequenceHandler = new SequenceHandler(this.messageTypes, lastSequenceId);
+        this.lastPersistedSequenceId = lastSequenceId;
+        this.pipeline = new ArrayBlockingQueue<>(this.pipelineDepth);
+        this.producer = this.messagingFactory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        this.persistThread = new Thread(this::runPersistThread, "async-persist");
+        this.persistThread.start();
+        this.consumer = this.messagingFactory.createAcknowledgingBatchMessageListener(Messaging.Topic.SEQUENCE,
+                GROUP_ID, this::processMessages);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if(this.consumer != null)
+            this.consumer.stop();
+        if(this.persistThread != null)
+            this.persistThread.interrupt();
+    }
+
+    // 消费线程：定序后放入写库队列，队列满时阻塞，形成背压
+    // 全部重复的批次也放入队列，保证 ack 按接收顺序提交
+    synchronized void processMessages(List<AbstractEvent> messages, Acknowledgment ack) {
+        if(this.crash)
+            return;
+        // 去重后再定序
+        List<AbstractEvent> duplicates = new ArrayList<>();
+        messages = this.uniqueIdFilter.filter(messages, duplicates);
+        rejectDuplicates(duplicates);
+        SequenceHandler.SequencedBatch batch = this.sequenceHandler.sequence(messages, ack);
+        if(logger.isDebugEnabled())
+            logger.debug("sequenced {} events, last sequenceId = {}", messages.size(), this.sequenceHandler.getSequence());
+        try {
+            this.pipeline.put(batch);
+        } catch (InterruptedException e) {
+            // 已分配 sequenceId，丢弃该批次会使 TRADE 的 sequence 出现空洞
+            logger.error("{} was interrupted after sequenced {} events.", Thread.currentThread().getName(),
+                    messages.size());
+            panic();
+        }
+    }
+
+    // 写库线程：合并排队的批次在一个事务中写入，成功后按顺序发送到 TRADE
+    private void runPersistThread() {
+        logger.info("start persist sequenced events...");
+        List<SequenceHandler.SequencedBatch> batches = new ArrayList<>();
+        for(;;) {
+            try {
+                batches.add(this.pipeline.take());
+            } catch (InterruptedException e) {
+                logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                break;
+            }
+            int size = batches.getFirst().entities().size();
+            while(size < this.maxBatchSize) {
+                SequenceHandler.SequencedBatch next = this.pipeline.poll();
+                if(next == null)
+                    break;
+                batches.add(next);
+                size += next.entities().size();
+            }
+            List<SequenceHandler.SequencedBatch> persisting = List.copyOf(batches);
+            List<EventEntity> entities = new ArrayList<>(size);
+            List<UniqueEventEntity> uniqueEvents = new ArrayList<>();
+            List<AbstractEvent> events = new ArrayList<>(size);
+            for(SequenceHandler.SequencedBatch batch : batches) {
+                entities.addAll(batch.entities());
+                uniqueEvents.addAll(batch.uniqueEvents());
+                events.addAll(batch.events());
+            }
+            batches.clear();
+            List<AbstractEvent> duplicates = new ArrayList<>();
+            try {
+                if(!events.isEmpty()) {
+                    this.sequenceStore.insertEvents(entities, uniqueEvents,
+                            stored -> duplicates.addAll(removeStoredDuplicates(events, entities, stored)));
+                }
+            } catch (Exception e) {
+                // 不 ack，重启后重新消费未提交的请求
+                logger.error("persist events failed.", e);
+                panic();
+                return;
+            }
+            persisting.forEach(batch -> batch.ack().acknowledge());
+            rejectDuplicates(duplicates);
+            if(events.isEmpty())
+                continue;
+            if(logger.isDebugEnabled())
+                logger.debug("persisted {} events, send to trade...", events.size());
+            // 事件已写入db，发送失败时交易引擎会从db补齐
+            this.producer.sendMessagesAsync(events).whenComplete((result, e) -> {
+                if(e != null)
+                    logger.error("send {} events to trade failed, in flight: {}.", events.size(),
+                            this.producer.getInFlightMessages());
+            });
+        }
+    }
+
+    // 早于去重窗口的重复请求在写入事件前丢弃，返回丢弃的事件
+    // 后续事件的 previousId 改为指向上一个保留的事件，并重新生成写入数据库的数据
+    List<AbstractEvent> removeStoredDuplicates(List<AbstractEvent> events, List<EventEntity> entities,
+                                               Set<String> stored) {
+        List<AbstractEvent> duplicates = new ArrayList<>();
+        if(!stored.isEmpty()) {
+            for(int i = events.size() - 1; i >= 0; i--) {
+                String key = UniqueIdFilter.uniqueKey(events.get(i));
+                if(key != null && stored.contains(key)) {
+                    logger.warn("ignore duplicate event found in db: {}", events.get(i));
+                    duplicates.add(events.remove(i));
+                    entities.remove(i);
+                }
+            }
+        }
+        for(int i = 0; i < events.size(); i++) {
+            AbstractEvent event = events.get(i);
+            if(event.previousId != this.lastPersistedSequenceId) {
+                EventEntity entity = entities.get(i);
+                event.previousId = this.lastPersistedSequenceId;
+                entity.previousId = event.previousId;
+                entity.data = this.messageTypes.serialize(event);
+            }
+            this.lastPersistedSequenceId = event.sequenceId;
+        }
+        return duplicates.reversed();
+    }
+
+    // 重复的请求不会定序，直接返回失败结果，避免网关等待超时
+    private void rejectDuplicates(List<AbstractEvent> duplicates) {
+        for(AbstractEvent event : duplicates) {
+            if(event.refId == null)
+                continue;
+            String channel = event.gatewayId == null ? RedisCache.Topic.TRADING_API_RESULT
+                    : RedisCache.Topic.tradingApiResult(event.gatewayId);
+            try {
+                this.redisService.publish(channel, JsonUtil.writeJson(
+                        ApiResultMessage.duplicateRequest(event.refId, System.currentTimeMillis())));
+            } catch (Exception e) {
+                logger.warn("publish duplicate result for refId {} failed.", event.refId, e);
+            }
+        }
+    }
+
+    private void panic() {
+        logger.error("application panic, exit now....");
+        this.crash = true;
+        System.exit(1);
+    }
+}
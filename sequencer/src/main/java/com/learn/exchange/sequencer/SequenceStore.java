@@ -0,0 +1,67 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.db.DbTemplate;
+import com.learn.exchange.model.trade.EventEntity;
+import com.learn.exchange.model.trade.UniqueEventEntity;
+import com.learn.exchange.support.LoggerSupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+@Transactional
+@Component
+public class SequenceStore extends LoggerSupport {
+    @Autowired
+    DbTemplate dbTemplate;
+
+    // 数据库中最大的 sequenceId，无记录返回 0
+    public long getMaxSequenceId() {
+        Long max = dbTemplate.getJdbcTemplate().queryForObject(
+                "SELECT MAX(sequenceId) FROM " + dbTemplate.getTable(EventEntity.class), Long.class);
+        return max == null ? 0 : max;
+    }
+
+    // 一个事务内写入 uniqueId 和事件：uniqueId 用一条 INSERT IGNORE 写入，写入行数不足时才查询哪些已存在
+    // removeDuplicates 收到之前已定序的 uniqueId(通常为空)，从 events 中移除对应的事件后再写入事件
+    public void insertEvents(List<EventEntity> events, List<UniqueEventEntity> uniqueEvents,
+                             Consumer<Set<String>> removeDuplicates) {
+        Set<String> stored = Set.of();
+        if(dbTemplate.insertIgnoreBatch(uniqueEvents) < uniqueEvents.size()) {
+            // 本批写入的行 sequenceId 不小于本批第一个，更早的是之前定序的重复请求
+            stored = findExistingUniqueIds(uniqueEvents.stream().map(unique -> unique.uniqueId).toList(),
+                    uniqueEvents.getFirst().sequenceId);
+        }
+        removeDuplicates.accept(stored);
+        dbTemplate.insertBatch(events);
+    }
+
+    // 查询已存在的 uniqueId
+    public Set<String> findExistingUniqueIds(Collection<String> uniqueIds) {
+        return findExistingUniqueIds(uniqueIds, Long.MAX_VALUE);
+    }
+
+    // 查询 sequenceId 小于 beforeSequenceId 的已存在的 uniqueId
+    Set<String> findExistingUniqueIds(Collection<String> uniqueIds, long beforeSequenceId) {
+        String placeholders = String.join(",", uniqueIds.stream().map(id -> "?").toList());
+        List<Object> args = new ArrayList<>(uniqueIds);
+        args.add(beforeSequenceId);
+        List<String> existing = dbTemplate.getJdbcTemplate().queryForList(
+                "SELECT uniqueId FROM " + dbTemplate.getTable(UniqueEventEntity.class) +
+                        " WHERE uniqueId IN (" + placeholders + ") AND sequenceId < ?", String.class, args.toArray());
+        return new HashSet<>(existing);
+    }
+
+    // 最近定序的 uniqueId，用于启动时预热去重过滤器
+    public List<String> loadRecentUniqueIds(int limit) {
+        return dbTemplate.getJdbcTemplate().queryForList(
+                "SELECT uniqueId FROM " + dbTemplate.getTable(UniqueEventEntity.class) +
+                        " ORDER BY sequenceId DESC LIMIT ?", String.class, limit);
+    }
+}
@@ -0,0 +1,125 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderCancelEvent;
+import com.learn.exchange.message.event.OrderRequestEvent;
+import com.learn.exchange.message.event.TransferEvent;
+import com.learn.exchange.support.LoggerSupport;
+
+import java.util.*;
+
+// 按 userId:uniqueId 去重：布隆过滤器未命中的直接放行，命中时先查最近的 LRU，
+// 仍无法确定的同一批合并为一次数据库查询
+// 早于布隆过滤器窗口的重复请求无法识别，由写库线程在写入前确认
+public class UniqueIdFilter extends LoggerSupport {
+
+    @FunctionalInterface
+    public interface UniqueIdLookup {
+        // 返回已存在的 uniqueId
+        Set<String> findExisting(Collection<String> uniqueIds);
+    }
+
+    final RotatingBloomFilter bloomFilter;
+    final UniqueIdLookup lookup;
+    final int lruSize;
+    // 最近的 uniqueId
+    final LinkedHashMap<String, Boolean> recent;
+
+    private long dbLookups = 0;
+    private long duplicates = 0;
+
+    public UniqueIdFilter(RotatingBloomFilter bloomFilter, int lruSize, UniqueIdLookup lookup) {
+        this.bloomFilter = bloomFilter;
+        this.lookup = lookup;
+        this.lruSize = lruSize;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > UniqueIdFilter.this.lruSize;
+            }
+        };
+    }
+
+    // 启动时加载已定序的 uniqueId
+    public void preload(Collection<String> uniqueIds) {
+        for(String uniqueId : uniqueIds)
+            remember(uniqueId);
+    }
+
+    // 去重的 key: 不同用户的 uniqueId 互不影响
+    public static String uniqueKey(AbstractEvent event) {
+        if(event.uniqueId == null)
+            return null;
+        Long userId = switch (event) {
+            case OrderRequestEvent e -> e.userId;
+            case OrderCancelEvent e -> e.userId;
+            case TransferEvent e -> e.fromUserId;
+            default -> null;
+        };
+        return userId + ":" + event.uniqueId;
+    }
+
+    public List<AbstractEvent> filter(List<AbstractEvent> messages) {
+        return filter(messages, null);
+    }
+
+    // 过滤掉重复的事件，保持原有顺序，重复的事件放入 duplicates
+    public List<AbstractEvent> filter(List<AbstractEvent> messages, List<AbstractEvent> duplicates) {
+        Set<String> batchIds = null;
+        Set<String> suspects = null;
+        String[] keys = new String[messages.size()];
+        boolean[] duplicated = new boolean[messages.size()];
+        for(int i = 0; i < messages.size(); i++) {
+            String uniqueId = uniqueKey(messages.get(i));
+            if(uniqueId == null)
+                continue;
+            keys[i] = uniqueId;
+            if(batchIds == null)
+                batchIds = new HashSet<>();
+            if(!batchIds.add(uniqueId) || this.recent.containsKey(uniqueId)) {
+                // 同一批内重复或最近已定序
+                duplicated[i] = true;
+            } else if(this.bloomFilter.mightContain(uniqueId)) {
+                // 可能重复，需查询数据库确认
+                if(suspects == null)
+                    suspects = new HashSet<>();
+                suspects.add(uniqueId);
+            }
+        }
+        if(batchIds == null)
+            return messages;
+        Set<String> existing = Set.of();
+        if(suspects != null) {
+            this.dbLookups++;
+            existing = this.lookup.findExisting(suspects);
+        }
+        List<AbstractEvent> result = new ArrayList<>(messages.size());
+        for(int i = 0; i < messages.size(); i++) {
+            AbstractEvent message = messages.get(i);
+            if(duplicated[i] || (keys[i] != null && existing.contains(keys[i]))) {
+                this.duplicates++;
+                logger.warn("ignore duplicate event: {}", message);
+                if(duplicates != null)
+                    duplicates.add(message);
+                continue;
+            }
+            if(keys[i] != null)
+                remember(keys[i]);
+            result.add(message);
+        }
+        return result;
+    }
+
+    public long getDbLookups() {
+        return this.dbLookups;
+    }
+
+    public long getDuplicates() {
+        return this.duplicates;
+    }
+
+    private void remember(String uniqueId) {
+        this.bloomFilter.put(uniqueId);
+        this.recent.put(uniqueId, Boolean.TRUE);
+    }
+}
@@ -0,0 +1,67 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderCancelEvent;
+import com.learn.exchange.message.event.OrderRequestEvent;
+import com.learn.exchange.messaging.MessageTypes;
+import com.learn.exchange.model.trade.EventEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceHandlerTest {
+
+    MessageTypes messageTypes;
+
+    @BeforeEach
+    public void setUp() {
+        messageTypes = new MessageTypes();
+        messageTypes.init();
+    }
+
+    @Test
+    public void testContiguousSequence() {
+        SequenceHandler handler = new SequenceHandler(messageTypes, 100);
+        var first = handler.sequence(List.of(orderRequest(), cancel()), () -> {});
+        var second = handler.sequence(List.of(orderRequest()), () -> {});
+        assertEquals(103, handler.getSequence());
+
+        List<AbstractEvent> events = List.of(first.events().get(0), first.events().get(1), second.events().get(0));
+        long previous = 100;
+        for(AbstractEvent event : events) {
+            assertEquals(previous, event.previousId);
+            assertEquals(previous + 1, event.sequenceId);
+            previous = event.sequenceId;
+        }
+        assertTrue(second.events().getFirst().createdAt >= first.events().getFirst().createdAt);
+
+        // 写入数据库的数据可还原为原事件
+        EventEntity entity = first.entities().get(1);
+        assertEquals(102, entity.sequenceId);
+        assertEquals(101, entity.previousId);
+        OrderCancelEvent restored = (OrderCancelEvent) messageTypes.deserialize(entity.data);
+        assertEquals(102, restored.sequenceId);
+        assertEquals(Long.valueOf(9L), restored.refOrderId);
+    }
+
+    OrderRequestEvent orderRequest() {
+        OrderRequestEvent event = new OrderRequestEvent();
+        event.userId = 1000L;
+        event.direction = Direction.BUY;
+        event.price = new BigDecimal("2000.5");
+        event.quantity = new BigDecimal("1.2");
+        return event;
+    }
+
+    OrderCancelEvent cancel() {
+        OrderCancelEvent event = new OrderCancelEvent();
+        event.userId = 1000L;
+        event.refOrderId = 9L;
+        return event;
+    }
+}
@@ -0,0 +1,164 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderRequestEvent;
+import com.learn.exchange.messaging.BatchMessageHandler;
+import com.learn.exchange.messaging.MessageConsumer;
+import com.learn.exchange.messaging.MessageProducer;
+import com.learn.exchange.messaging.MessageTypes;
+import com.learn.exchange.messaging.Messaging;
+import com.learn.exchange.messaging.MessagingFactory;
+import com.learn.exchange.model.trade.EventEntity;
+import com.learn.exchange.model.trade.UniqueEventEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SequenceServiceTest {
+
+    SequenceService service;
+    BlockingStore store;
+    List<AbstractEvent> sent;
+
+    @BeforeEach
+    public void setUp() {
+        MessageTypes messageTypes = new MessageTypes();
+        messageTypes.init();
+        store = new BlockingStore();
+        sent = new CopyOnWriteArrayList<>();
+        service = new SequenceService();
+        service.messageTypes = messageTypes;
+        service.sequenceStore = store;
+        service.messagingFactory = new MessagingFactory() {
+            @Override
+            public <T extends AbstractMessage> MessageProducer<T> createMessageProducer(
+                    Messaging.Topic topic, Class<T> messageClass) {
+                return message -> sent.add((AbstractEvent) message);
+            }
+
+            @Override
+            public <T extends AbstractMessage> MessageConsumer createBatchMessageListener(
+                    Messaging.Topic topic, String groupId, BatchMessageHandler<T> messageHandler) {
+                return () -> {};
+            }
+        };
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        store.release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    public void testSequenceWhilePersisting() throws InterruptedException {
+        List<Integer> acks = new CopyOnWriteArrayList<>();
+        OrderRequestEvent first = orderRequest();
+        service.processMessages(new ArrayList<>(List.of(first)), () -> acks.add(1));
+        assertTrue(store.persisting.await(5, TimeUnit.SECONDS));
+
+        // 第 1 批写库被阻塞时，第 2 批仍可定序并返回，未写库的批次不 ack
+        OrderRequestEvent second = orderRequest();
+        service.processMessages(new ArrayList<>(List.of(second)), () -> acks.add(2));
+        assertEquals(1, first.sequenceId);
+        assertEquals(2, second.sequenceId);
+        assertTrue(acks.isEmpty());
+        assertTrue(sent.isEmpty());
+
+        store.release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while(sent.size() < 2 && System.currentTimeMillis() < deadline)
+            TimeUnit.MILLISECONDS.sleep(5);
+        assertEquals(List.of(1, 2), acks);
+        assertEquals(List.of(first, second), sent);
+    }
+
+    @Test
+    public void testRelinkAfterStoredDuplicate() throws InterruptedException {
+        store.release.countDown();
+        // 第 2 个请求早已定序，只在数据库中能查到
+        store.stored = Set.of("1000:b");
+        List<AbstractEvent> events = List.of(orderRequest("a"), orderRequest("b"), orderRequest("c"));
+        service.processMessages(new ArrayList<>(events), () -> {});
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(sent.size() < 2 && System.currentTimeMillis() < deadline)
+            TimeUnit.MILLISECONDS.sleep(5);
+        assertEquals(List.of(events.get(0), events.get(2)), sent);
+        assertEquals(2, store.inserted.size());
+        EventEntity last = store.inserted.get(1);
+        assertEquals(3, last.sequenceId);
+        assertEquals(1, last.previousId);
+        assertEquals(1, events.get(2).previousId);
+        // 写入数据库的数据也指向上一个保留的事件
+        AbstractEvent restored = (AbstractEvent) service.messageTypes.deserialize(last.data);
+        assertEquals(1, restored.previousId);
+        assertEquals(3, restored.sequenceId);
+    }
+
+    OrderRequestEvent orderRequest(String uniqueId) {
+        OrderRequestEvent event = orderRequest();
+        event.uniqueId = uniqueId;
+        return event;
+    }
+
+    OrderRequestEvent orderRequest() {
+        OrderRequestEvent event = new OrderRequestEvent();
+        event.userId = 1000L;
+        event.direction = Direction.BUY;
+        event.price = new BigDecimal("2000.5");
+        event.quantity = new BigDecimal("1.2");
+        return event;
+    }
+
+    // 写库时阻塞，直到 release；stored 为数据库中已存在的 uniqueId
+    static class BlockingStore extends SequenceStore {
+        final CountDownLatch persisting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<EventEntity> inserted = new CopyOnWriteArrayList<>();
+        Set<String> stored = Set.of();
+
+        @Override
+        public long getMaxSequenceId() {
+            return 0;
+        }
+
+        @Override
+        public void insertEvents(List<EventEntity> events, List<UniqueEventEntity> uniqueEvents,
+                                 Consumer<Set<String>> removeDuplicates) {
+            persisting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            removeDuplicates.accept(stored);
+            inserted.addAll(events);
+        }
+
+        @Override
+        public Set<String> findExistingUniqueIds(Collection<String> uniqueIds) {
+            return Set.of();
+        }
+
+        @Override
+        public List<String> loadRecentUniqueIds(int limit) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.learn.exchange.sequencer;
+
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderCancelEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UniqueIdFilterTest {
+
+    @Test
+    public void testFilterDuplicates() {
+        // 模拟数据库中已存在的 uniqueId
+        Set<String> stored = new HashSet<>(Set.of("1:old-1"));
+        UniqueIdFilter filter = new UniqueIdFilter(new RotatingBloomFilter(2, 1000, 0.001), 2,
+                ids -> ids.stream().filter(stored::contains).collect(Collectors.toSet()));
+        filter.preload(List.of("1:old-1"));
+
+        List<AbstractEvent> result = filter.filter(List.of(event("a"), event(null), event("a"), event("b"), event("old-1")));
+        assertEquals(List.of("a", "-", "b"), ids(result));
+        assertEquals(2, filter.getDuplicates());
+
+        // 已从 LRU 中淘汰的 old-1 由布隆过滤器命中后查询数据库
+        result = filter.filter(List.of(event("c"), event("d"), event("old-1"), event("e")));
+        assertEquals(List.of("c", "d", "e"), ids(result));
+        assertEquals(1, filter.getDbLookups());
+        stored.add("1:a");
+        result = filter.filter(List.of(event("a"), event("f")));
+        assertEquals(List.of("f"), ids(result));
+        assertEquals(2, filter.getDbLookups());
+        assertEquals(4, filter.getDuplicates());
+    }
+
+    @Test
+    public void testScopedByUser() {
+        UniqueIdFilter filter = new UniqueIdFilter(new RotatingBloomFilter(2, 1000, 0.001), 100, ids -> Set.of());
+        List<AbstractEvent> duplicates = new ArrayList<>();
+        // 不同用户使用相同的 uniqueId 互不影响
+        List<AbstractEvent> result = filter.filter(List.of(event(1L, "a"), event(2L, "a"), event(1L, "a")), duplicates);
+        assertEquals(2, result.size());
+        assertEquals(1, duplicates.size());
+        assertEquals(1L, ((OrderCancelEvent) duplicates.getFirst()).userId);
+    }
+
+    @Test
+    public void testBloomRotation() {
+        RotatingBloomFilter bloom = new RotatingBloomFilter(2, 100, 0.01);
+        for(int i = 0; i < 100; i++)
+            bloom.put("key-" + i);
+        for(int i = 0; i < 100; i++)
+            assertTrue(bloom.mightContain("key-" + i));
+        // 写满两代后最早的 key 被遗忘
+        for(int i = 100; i < 300; i++)
+            bloom.put("key-" + i);
+        int remembered = 0;
+        for(int i = 0; i < 100; i++) {
+            if(bloom.mightContain("key-" + i))
+                remembered++;
+        }
+        assertTrue(remembered < 10);
+        for(int i = 200; i < 300; i++)
+            assertTrue(bloom.mightContain("key-" + i));
+    }
+
+    AbstractEvent event(String uniqueId) {
+        return event(1L, uniqueId);
+    }
+
+    AbstractEvent event(Long userId, String uniqueId) {
+        OrderCancelEvent event = new OrderCancelEvent();
+        event.userId = userId;
+        event.uniqueId = uniqueId;
+        return event;
+    }
+
+    List<String> ids(List<AbstractEvent> events) {
+        return events.stream().map(e -> e.uniqueId == null ? "-" : e.uniqueId).toList();
+    }
+}
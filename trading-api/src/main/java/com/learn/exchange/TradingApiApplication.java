@@ -0,0 +1,11 @@
+package com.learn.exchange;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+@SpringBootApplication
+public class TradingApiApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(TradingApiApplication.class, args);
+    }
+}
@@ -0,0 +1,88 @@
+package com.learn.exchange.web.api;
+
+import com.learn.exchange.ApiError;
+import com.learn.exchange.ApiErrorResponse;
+import com.learn.exchange.message.ApiResultMessage;
+import com.learn.exchange.redis.RedisCache;
+import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.support.LoggerSupport;
+import com.learn.exchange.util.IpUtil;
+import com.learn.exchange.util.JsonUtil;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 订阅引擎推送的处理结果，按 refId 完成挂起的请求，不占用请求线程
+@Component
+public class ApiResultService extends LoggerSupport {
+
+    static final ApiErrorResponse TIMEOUT = new ApiErrorResponse(ApiError.OPERATION_TIMEOUT, null,
+            "Operation timeout.");
+
+    @Autowired
+    RedisService redisService;
+
+    @Value("${exchange.config.api-timeout-millis:5000}")
+    long timeoutMillis = 5000;
+    // 网关 id，默认使用主机 id 和端口
+    @Value("${exchange.config.gateway-id:}")
+    String gatewayId;
+    @Value("${server.port:8001}")
+    int serverPort;
+
+    // refId -> 等待结果的请求
+    final Map<String, DeferredResult<ResponseEntity<Object>>> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if(this.gatewayId == null || this.gatewayId.isEmpty())
+            this.gatewayId = IpUtil.getHostId() + "_" + this.serverPort;
+        // 只订阅本网关的结果频道
+        String channel = RedisCache.Topic.tradingApiResult(this.gatewayId);
+        logger.info("subscribe api result channel {}...", channel);
+        this.redisService.subscribe(channel, this::onApiResultMessage);
+    }
+
+    public String getGatewayId() {
+        return this.gatewayId;
+    }
+
+    // 需在发送事件前注册，避免结果先于注册到达
+    public DeferredResult<ResponseEntity<Object>> register(String refId) {
+        DeferredResult<ResponseEntity<Object>> deferred = new DeferredResult<>(this.timeoutMillis);
+        deferred.onTimeout(() -> {
+            logger.warn("api result timeout for refId {}.", refId);
+            deferred.setResult(ResponseEntity.badRequest().body(TIMEOUT));
+        });
+        deferred.onCompletion(() -> this.pending.remove(refId));
+        this.pending.put(refId, deferred);
+        return deferred;
+    }
+
+    public void cancel(String refId) {
+        this.pending.remove(refId);
+    }
+
+    void onApiResultMessage(String msg) {
+        ApiResultMessage message = JsonUtil.readJson(msg, ApiResultMessage.class);
+        if(message.refId == null)
+            return;
+        // 已超时的请求不再处理
+        DeferredResult<ResponseEntity<Object>> deferred = this.pending.remove(message.refId);
+        if(deferred == null)
+            return;
+        if(logger.isDebugEnabled())
+            logger.debug("got api result for refId {}.", message.refId);
+        if(message.error != null) {
+            deferred.setResult(ResponseEntity.badRequest().body(message.error));
+        } else {
+            deferred.setResult(ResponseEntity.ok(message.result));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.learn.exchange.web.api;
+
+import com.learn.exchange.ApiError;
+import com.learn.exchange.ApiErrorResponse;
+import com.learn.exchange.ApiException;
+import com.learn.exchange.bean.OrderRequestBean;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderCancelEvent;
+import com.learn.exchange.message.event.OrderRequestEvent;
+import com.learn.exchange.messaging.MessageProducer;
+import com.learn.exchange.messaging.Messaging;
+import com.learn.exchange.messaging.MessagingFactory;
+import com.learn.exchange.support.LoggerSupport;
+import com.learn.exchange.util.UserToken;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api")
+public class TradingApiController extends LoggerSupport {
+
+    static final String BEARER = "Bearer ";
+    static final String TOKEN_COOKIE = "api_token";
+
+    @Autowired
+    MessagingFactory messagingFactory;
+    @Autowired
+    ApiResultService apiResultService;
+
+    // 签发用户凭证的密钥，为空时拒绝所有交易请求
+    @Value("${exchange.config.api.token-secret:}")
+    String tokenSecret = "";
+
+    private UserToken userToken;
+    private MessageProducer<AbstractEvent> producer;
+
+    @PostConstruct
+    public void init() {
+        if(this.tokenSecret.isEmpty())
+            logger.warn("token secret is not set, all trading requests will be rejected.");
+        else
+            this.userToken = new UserToken(this.tokenSecret);
+        this.producer = this.messagingFactory.createMessageProducer(Messaging.Topic.SEQUENCE, AbstractEvent.class);
+    }
+
+    @PostMapping("/orders")
+    public DeferredResult<ResponseEntity<Object>> createOrder(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @CookieValue(value = TOKEN_COOKIE, required = false) String cookieToken,
+            @RequestBody OrderRequestBean orderRequest) {
+        Long userId = authenticate(authorization, cookieToken);
+        orderRequest.validate();
+        OrderRequestEvent event = new OrderRequestEvent();
+        event.refId = UUID.randomUUID().toString();
+        event.uniqueId = orderRequest.uniqueId;
+        event.userId = userId;
+        event.direction = orderRequest.direction;
+        event.price = orderRequest.price;
+        event.quantity = orderRequest.quantity;
+        event.createdAt = System.currentTimeMillis();
+        return send(event);
+    }
+
+    @PostMapping("/orders/{orderId}/cancel")
+    public DeferredResult<ResponseEntity<Object>> cancelOrder(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @CookieValue(value = TOKEN_COOKIE, required = false) String cookieToken,
+            @PathVariable("orderId") Long orderId) {
+        Long userId = authenticate(authorization, cookieToken);
+        OrderCancelEvent event = new OrderCancelEvent();
+        event.refId = UUID.randomUUID().toString();
+        event.userId = userId;
+        event.refOrderId = orderId;
+        event.createdAt = System.currentTimeMillis();
+        return send(event);
+    }
+
+    // 从 Authorization: Bearer 或 api_token cookie 校验用户凭证，不信任客户端提供的 userId
+    Long authenticate(String authorization, String cookieToken) {
+        String token = authorization != null && authorization.startsWith(BEARER)
+                ? authorization.substring(BEARER.length()).trim() : cookieToken;
+        if(token == null || token.isEmpty())
+            throw new ApiException(ApiError.AUTH_SIGNIN_REQUIRED, null, "Need signin first.");
+        Long userId = this.userToken == null ? null : this.userToken.verify(token, System.currentTimeMillis());
+        if(userId == null)
+            throw new ApiException(ApiError.AUTH_SIGNIN_FAILED, null, "Invalid or expired token.");
+        return userId;
+    }
+
+    private DeferredResult<ResponseEntity<Object>> send(AbstractEvent event) {
+        event.gatewayId = this.apiResultService.getGatewayId();
+        DeferredResult<ResponseEntity<Object>> deferred = this.apiResultService.register(event.refId);
+        try {
+            this.producer.sendMessage(event);
+        } catch (RuntimeException e) {
+            this.apiResultService.cancel(event.refId);
+            throw e;
+        }
+        return deferred;
+    }
+
+    @ExceptionHandler(ApiException.class)
+    public ResponseEntity<ApiErrorResponse> handleApiException(ApiException e) {
+        if(e.error.error() == ApiError.AUTH_SIGNIN_REQUIRED || e.error.error() == ApiError.AUTH_SIGNIN_FAILED)
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.error);
+        return ResponseEntity.badRequest().body(e.error);
+    }
+
+    @ExceptionHandler(RuntimeException.class)
+    public ResponseEntity<ApiErrorResponse> handleException(RuntimeException e) {
+        logger.warn("process api request failed.", e);
+        return ResponseEntity.internalServerError().body(new ApiErrorResponse(ApiError.INTERNAL_SERVER_ERROR, null,
+                "Internal server error."));
+    }
+}
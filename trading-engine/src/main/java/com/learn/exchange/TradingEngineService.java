@@ -3,12 +3,14 @@ package com.learn.exchange;
 import com.learn.exchange.assets.Asset;
 import com.learn.exchange.assets.AssetService;
 import com.learn.exchange.assets.Transfer;
+import com.learn.exchange.bean.BestBidOfferBean;
 import com.learn.exchange.bean.OrderBookBean;
 import com.learn.exchange.clearing.ClearingService;
 import com.learn.exchange.enums.AssetEnum;
 import com.learn.exchange.enums.Direction;
 import com.learn.exchange.enums.MatchType;
 import com.learn.exchange.enums.UserType;
+import com.learn.exchange.load.SyntheticEventGenerator;
 import com.learn.exchange.match.MatchDetailRecord;
 import com.learn.exchange.match.MatchEngine;
 import com.learn.exchange.match.MatchResult;
@@ -29,8 +31,12 @@ import com.learn.exchange.model.trade.OrderEntity;
 import com.learn.exchange.order.OrderService;
 import com.learn.exchange.redis.RedisCache;
 import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.result.ResultRing;
+import com.learn.exchange.result.ResultSlot;
+import com.learn.exchange.state.StateHash;
 import com.learn.exchange.store.StoreService;
 import com.learn.exchange.support.LoggerSupport;
+import com.learn.exchange.util.CompressUtil;
 import com.learn.exchange.util.IpUtil;
 import com.learn.exchange.util.JsonUtil;
 import jakarta.annotation.PostConstruct;
@@ -44,8 +50,11 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 @Component
 public class TradingEngineService extends LoggerSupport {
@@ -54,10 +63,66 @@ public class TradingEngineService extends LoggerSupport {
 
     // @Value("#{exchangeConfiguration.debugMode}")
     boolean debugMode = false;
-    // @Value("#{exchangeConfiguration.orderBookDepth}")
+    @Value("${exchange.config.order-book-depth:100}")
     int orderBookDepth = 100;
+    // 额外发布的 orderbook 档位，完整深度总是发布
+    @Value("${exchange.config.orderbook.tiers:5,20}")
+    int[] orderBookTiers = {5, 20};
+    // 合并 TickMessage 的时间窗口(毫秒)，0 表示只合并已在队列中的消息
+    @Value("${exchange.config.tick-coalesce-millis:0}")
+    long tickCoalesceMillis = 0;
+    // 未确认的 TickMessage 达到该数量时暂缓发送，继续合并
+    @Value("${exchange.config.tick-max-in-flight:100}")
+    int tickMaxInFlight = 100;
+    // 用户通知分片数 / 合并通知的时间窗口(毫秒)
+    @Value("${exchange.config.notification-shards:16}")
+    int notificationShards = 16;
+    @Value("${exchange.config.notification-coalesce-millis:20}")
+    long notificationCoalesceMillis = 20;
+    // orderBook 快照每秒最多发布次数(0 不限制) / 发布间隔至少为 Redis 耗时的倍数
+    @Value("${exchange.config.orderbook.max-publish-per-second:20}")
+    int orderBookMaxPublishPerSecond = 20;
+    @Value("${exchange.config.orderbook.latency-factor:4}")
+    int orderBookLatencyFactor = 4;
+    // 行情 Stream 保留的大致条数(0 不写入 Stream)
+    @Value("${exchange.config.stream.max-length:10000}")
+    int streamMaxLength = 10000;
+    // 引擎结果环形缓冲区大小(2 的幂)
+    @Value("${exchange.config.result-ring-size:65536}")
+    int resultRingSize = 65536;
+
+    // 备用实例: 与主实例处理相同的事件但不产生任何输出，提升后立即接管
+    @Value("${exchange.config.engine.role:primary}")
+    String role = "primary";
+    // 每隔多少个 sequenceId 计算一次状态摘要(0 不计算)
+    @Value("${exchange.config.engine.digest-interval:10000}")
+    long digestInterval = 10000;
+    // 启动时先用合成事件在临时引擎上运行，触发热点代码的 C2 编译后再开始消费(0 不预热)
+    @Value("${exchange.config.engine.warmup-events:0}")
+    int warmupEvents = 0;
+    // 预热的最长时间(毫秒)，超时后提前结束
+    @Value("${exchange.config.engine.warmup-max-millis:30000}")
+    long warmupMaxMillis = 30000;
 
     boolean fatalError = false;
+    // 出现致命错误时退出进程，预热用的临时引擎只停止处理
+    boolean exitOnPanic = true;
+    volatile boolean standby = false;
+    // 正在从db重放输出已发布过的事件，期间只更新状态和写入db
+    boolean replaying = false;
+    // 不大于该 sequenceId 的事件的输出已发布过(启动时取各输出通道已确认发布位置的最小值)，重放时不再重复发布
+    long publishedSequenceId = 0;
+    // 分发线程已放入输出队列的最后一个批次的 sequenceId，输出线程清空队列且发送确认后记为该通道已发布
+    private volatile long queuedSequenceId = 0;
+    // Kafka 已确认发送的 tick 对应的位置
+    private final AtomicLong tickAckedSequenceId = new AtomicLong();
+    // 累计重放的事件数
+    private volatile long replayedEvents = 0;
+    // 提升后在下一个批次发布完整的 orderBook 快照
+    private volatile boolean snapshotRequested = false;
+    // 最近一次计算的状态摘要
+    private volatile StateDigest lastDigest = null;
+    private WarmupResult warmupResult = null;
 
     @Autowired
     AssetService assetService;
@@ -79,105 +144,382 @@ public class TradingEngineService extends LoggerSupport {
     private MessageProducer<TickMessage> producer;
 
     private String shaUpdateOrderBookLua;
+    private String shaAppendStreamLua;
 
     // 上一个处理的事件的 sequenceId
     private long lastSequenceId = 0;
     // orderBook 是否发生了变化
     private boolean orderBookChanged = false;
+    // 当前月份的起止时间(毫秒)及 yyyyMM，用于计算 orderId
+    private long monthStartMillis = 0;
+    private long monthEndMillis = 0;
+    private int yearMonth = 0;
+
+    // 引擎线程写入结果，分发线程构造实体和消息
+    private ResultRing resultRing;
+    // 分发线程中当前批次产生的 tick，批次结束后合并为一个 TickMessage
+    private List<TickEntity> batchTicks = new ArrayList<>();
+    private long batchTickCreatedAt = 0;
 
+    private Thread fanOutThread;
     private Thread tickThread;
     private Thread notifyThread;
     private Thread apiResultThread;
     private Thread orderBookThread;
+    private Thread bboThread;
     private Thread dbThread;
+    private Thread digestThread;
 
     // 保存的最新orderBook快照
-    private OrderBookBean lastedOrderBook = null;
+    private volatile OrderBookBean lastedOrderBook = null;
+    // 生成的快照数(引擎线程写) / 发布到Redis的快照数 / 发布耗时的平滑值(发布线程写)
+    private volatile long orderBookSnapshots = 0;
+    private volatile long orderBookPublished = 0;
+    private volatile long orderBookPublishNanos = 0;
+    // 发送的 TickMessage 数(tick 线程写)
+    private volatile long tickMessagesSent = 0;
+
+    // 单个 TickMessage 最多包含的 tick 数量，避免消息过大
+    static final int MAX_TICKS_PER_MESSAGE = 2000;
+    // 记录已发布位置的输出通道，写入 RedisCache.Key.ENGINE_PUBLISHED
+    static final String PUBLISHED_TICK = "tick";
+    static final String PUBLISHED_API_RESULT = "api_result";
+    static final String PUBLISHED_NOTIFICATION = "notification";
+    // 已发布位置写入 Redis 的最小间隔
+    static final long PUBLISHED_SAVE_MILLIS = 100;
+    // 发布到 Redis 失败后的重试间隔
+    static final long PUBLISH_RETRY_MILLIS = 100;
 
     private Queue<List<OrderEntity>> orderQueue = new ConcurrentLinkedQueue<>();
-    private Queue<List<MatchDetailEntity>> matchQueue = new ConcurrentLinkedQueue<>();
-    private Queue<TickMessage> tickQueue = new ConcurrentLinkedQueue<>();
+    Queue<List<MatchDetailEntity>> matchQueue = new ConcurrentLinkedQueue<>();
+    Queue<TickMessage> tickQueue = new ConcurrentLinkedQueue<>();
     private Queue<NotificationMessage> notificationQueue = new ConcurrentLinkedQueue<>();
-    private Queue<ApiResultMessage> apiResultQueue = new ConcurrentLinkedQueue<>();
+    Queue<ApiResult> apiResultQueue = new ConcurrentLinkedQueue<>();
+    // 待发布的状态摘要
+    Queue<StateDigest> digestQueue = new ConcurrentLinkedQueue<>();
+    // 每批结束时的最优买卖价变化，逐条发布
+    Queue<BestBidOfferBean> bboQueue = new ConcurrentLinkedQueue<>();
+    // 网关 id -> 结果频道，只在分发线程中使用
+    private final Map<String, String> apiResultChannels = new HashMap<>();
+
+    // 待发送到网关频道的结果
+    record ApiResult(String channel, ApiResultMessage message) {
+    }
+
+    record StateDigest(long sequenceId, String digest) {
+    }
+
+    record WarmupResult(long events, long millis, long activeOrders) {
+    }
+
+    // 通知合并的 key: 同一用户的同一订单
+    private record NotificationKey(Long userId, Long orderId) {
+    }
+    private String[] notificationChannels;
+    // 各档位的深度 / Redis key / 频道，最后一个为完整深度
+    private int[] orderBookTierDepths;
+    private String[] orderBookTierKeys;
+    private String[] orderBookTierChannels;
 
     @PostConstruct
     public void init() {
+        this.standby = "standby".equalsIgnoreCase(this.role);
+        logger.info("start trading engine as {}.", this.standby ? "standby" : "primary");
         this.shaUpdateOrderBookLua = this.redisService.loadScriptFromClasspath("/redis/update-orderbook.lua");
+        this.shaAppendStreamLua = this.redisService.loadScriptFromClasspath("/redis/append-stream.lua");
+        if(this.warmupEvents > 0)
+            this.warmupResult = warmUp(this.warmupEvents, this.warmupMaxMillis);
+        this.publishedSequenceId = loadPublishedSequenceId();
+        // 分发线程需在开始消费事件前启动
+        this.resultRing = new ResultRing(this.resultRingSize);
+        this.fanOutThread = new Thread(this::runFanOutThread, "async-fan-out");
+        this.fanOutThread.start();
         this.consumer = this.messagingFactory.createBatchMessageListener(Messaging.Topic.TRADE,
-                IpUtil.getHostId(), this::processMessages);
+                this.standby ? IpUtil.getHostId() + "_standby" : IpUtil.getHostId(), this::processMessages);
         this.producer = this.messagingFactory.createMessageProducer(Messaging.Topic.TICK, TickMessage.class);
         this.tickThread = new Thread(this::runTickThread, "async-tick");
         this.tickThread.start();
+        this.notificationChannels = new String[this.notificationShards];
+        for(int i = 0; i < this.notificationShards; i++)
+            this.notificationChannels[i] = RedisCache.Topic.notification(i);
         this.notifyThread = new Thread(this::runNotifyThread, "async-notify");
         this.notifyThread.start();
         this.apiResultThread = new Thread(this::runApiResultThread, "async-api-result");
         this.apiResultThread.start();
+        initOrderBookTiers();
         this.orderBookThread = new Thread(this::runOrderBookThread, "async-orderBook");
         this.orderBookThread.start();
+        this.bboThread = new Thread(this::runBboThread, "async-bbo");
+        this.bboThread.start();
         this.dbThread = new Thread(this::runDbThread, "async-db");
         this.dbThread.start();
+        this.digestThread = new Thread(this::runDigestThread, "async-digest");
+        this.digestThread.start();
     }
 
     @PreDestroy
     public void destroy() {
         this.consumer.stop();
+        this.fanOutThread.interrupt();
         this.orderBookThread.interrupt();
+        this.bboThread.interrupt();
         this.dbThread.interrupt();
+        this.digestThread.interrupt();
+    }
+
+    private void runFanOutThread() {
+        logger.info("start fan out engine results...");
+        while(!Thread.currentThread().isInterrupted()) {
+            if(drainResults() == 0) {
+                // 无结果，短暂暂停
+                LockSupport.parkNanos(50_000);
+            }
+        }
+        logger.warn("{} was interrupted.", Thread.currentThread().getName());
+    }
+
+    // 消费引擎写入的结果，构造实体与消息后放入各输出队列
+    int drainResults() {
+        return resultRing().drain(this::fanOut);
+    }
+
+    private void fanOut(ResultSlot slot) {
+        // 备用实例写入的结果全部丢弃，按写入时的角色判断，提升前写入的结果已由原主实例发送
+        if(slot.standby)
+            return;
+        if(slot.replay) {
+            // 输出已发布过的历史事件，只需幂等写入db
+            if(slot.type == ResultSlot.Type.ORDER_CREATED)
+                fanOutReplayed(slot);
+            return;
+        }
+        switch (slot.type) {
+            case ORDER_CREATED -> fanOutOrderCreated(slot);
+            case ORDER_FAILED ->
+                    this.apiResultQueue.add(new ApiResult(apiResultChannel(slot.gatewayId),
+                            ApiResultMessage.createOrderFailed(slot.refId, slot.createdAt)));
+            case CANCEL_FAILED ->
+                    this.apiResultQueue.add(new ApiResult(apiResultChannel(slot.gatewayId),
+                            ApiResultMessage.cancelOrderFailed(slot.refId, slot.createdAt)));
+            case ORDER_CANCELED -> {
+                // 已取消的订单不会再变化，复制为 OrderEntity 供序列化
+                OrderEntity canceled = slot.order.copy();
+                this.apiResultQueue.add(new ApiResult(apiResultChannel(slot.gatewayId),
+                        ApiResultMessage.orderSuccess(slot.refId, canceled, slot.createdAt)));
+                this.notificationQueue.add(createNotification(slot.createdAt, "order_canceled", canceled.userId, canceled));
+            }
+            case BATCH_END -> {
+                flushTicks();
+                // 本批次的输出都已放入队列
+                this.queuedSequenceId = slot.sequenceId;
+            }
+        }
+    }
+
+    private String apiResultChannel(String gatewayId) {
+        if(gatewayId == null)
+            return RedisCache.Topic.TRADING_API_RESULT;
+        return this.apiResultChannels.computeIfAbsent(gatewayId, RedisCache.Topic::tradingApiResult);
+    }
+
+    private void fanOutOrderCreated(ResultSlot slot) {
+        OrderEntity taker = slot.order;
+        // 按快照复制一份 OrderEntity，因为将异步序列化
+        OrderEntity snapshot = slot.copyOrder();
+        this.apiResultQueue.add(new ApiResult(apiResultChannel(slot.gatewayId),
+                ApiResultMessage.orderSuccess(slot.refId, snapshot, slot.createdAt)));
+        if(slot.fillCount == 0)
+            return;
+        // 收集已完成的 OrderEntity，已完成订单不会再变化，复制为 OrderEntity 后写入db
+        List<OrderEntity> closedOrders = new ArrayList<>();
+        List<MatchDetailEntity> matchDetails = new ArrayList<>(slot.fillCount * 2);
+        if(slot.status.isFinalStatus) {
+            closedOrders.add(snapshot);
+        }
+        for(int i = 0; i < slot.fillCount; i++) {
+            OrderEntity maker = slot.fillMakers[i];
+            if(slot.fillMakerClosed[i]) {
+                closedOrders.add(maker.copy());
+            }
+            BigDecimal price = slot.fillPrices[i];
+            BigDecimal quantity = slot.fillQuantities[i];
+            matchDetails.add(generateMatchDetailEntity(slot.sequenceId, slot.createdAt, price, quantity, taker, maker, true));
+            matchDetails.add(generateMatchDetailEntity(slot.sequenceId, slot.createdAt, price, quantity, taker, maker, false));
+            TickEntity tick = new TickEntity();
+            tick.sequenceId = slot.sequenceId;
+            tick.takerUserId = taker.userId;
+            tick.makerUserId = maker.userId;
+            tick.price = price;
+            tick.quantity = quantity;
+            tick.takerDirection = taker.direction == Direction.BUY;
+            tick.createdAt = slot.createdAt;
+            this.batchTicks.add(tick);
+        }
+        // 异步写入db
+        this.orderQueue.add(closedOrders);
+        this.matchQueue.add(matchDetails);
+        // tick 在批次结束时合并发送
+        this.batchTickCreatedAt = slot.createdAt;
+        // 异步通知orderMatch
+        this.notificationQueue.add(createNotification(slot.createdAt, "order_matched", taker.userId, snapshot));
+    }
+
+    private void fanOutReplayed(ResultSlot slot) {
+        if(slot.fillCount == 0)
+            return;
+        OrderEntity taker = slot.order;
+        List<OrderEntity> closedOrders = new ArrayList<>();
+        List<MatchDetailEntity> matchDetails = new ArrayList<>(slot.fillCount * 2);
+        if(slot.status.isFinalStatus) {
+            closedOrders.add(slot.copyOrder());
+        }
+        for(int i = 0; i < slot.fillCount; i++) {
+            OrderEntity maker = slot.fillMakers[i];
+            if(slot.fillMakerClosed[i]) {
+                closedOrders.add(maker.copy());
+            }
+            BigDecimal price = slot.fillPrices[i];
+            BigDecimal quantity = slot.fillQuantities[i];
+            matchDetails.add(generateMatchDetailEntity(slot.sequenceId, slot.createdAt, price, quantity, taker, maker, true));
+            matchDetails.add(generateMatchDetailEntity(slot.sequenceId, slot.createdAt, price, quantity, taker, maker, false));
+        }
+        this.orderQueue.add(closedOrders);
+        this.matchQueue.add(matchDetails);
     }
 
     private void runTickThread() {
         logger.info("start tick thread...");
+        // 在时间窗口内把多个 TickMessage 合并为一个发送
+        TickMessage merged = null;
+        long windowStart = 0;
+        PublishedMark published = new PublishedMark(PUBLISHED_TICK);
+        CompletableFuture<Void> lastSend = CompletableFuture.completedFuture(null);
+        long handedSequenceId = 0;
         for(;;) {
-            List<TickMessage> msgs = new ArrayList<>();
-            for(;;) {
-                TickMessage message = tickQueue.poll();
-                if(message != null) {
-                    msgs.add(message);
-                    if(msgs.size() >= 1000)
-                        break;
+            // 先读取位置再取队列，队列为空时该位置之前的 tick 都已取出
+            long queued = this.queuedSequenceId;
+            TickMessage message = tickQueue.poll();
+            if(message != null) {
+                if(merged == null) {
+                    merged = message;
+                    windowStart = System.currentTimeMillis();
+                } else if(merged.ticks.size() + message.ticks.size() > MAX_TICKS_PER_MESSAGE) {
+                    lastSend = sendTicks(merged);
+                    merged = message;
+                    windowStart = System.currentTimeMillis();
                 } else {
-                    break;
+                    merged.ticks.addAll(message.ticks);
+                    merged.sequenceId = message.sequenceId;
+                    merged.createdAt = message.createdAt;
                 }
+                continue;
             }
-            if(!msgs.isEmpty()) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("send {} tick messages...", msgs.size());
-                }
-                this.producer.sendMessages(msgs);
-            } else {
-                // 无 TickMessage，暂停 1ms
-                try {
-                    Thread.sleep(1);
-                }catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
-                    break;
-                }
+            if(merged != null && System.currentTimeMillis() - windowStart >= this.tickCoalesceMillis
+                    && this.producer.getInFlightMessages() < this.tickMaxInFlight) {
+                lastSend = sendTicks(merged);
+                merged = null;
+                continue;
+            }
+            if(merged == null && queued > handedSequenceId) {
+                // 之前的 tick 都已交给 producer，最后一条确认后记为已发布，Kafka 按顺序确认
+                handedSequenceId = queued;
+                lastSend.thenRun(() -> this.tickAckedSequenceId.accumulateAndGet(queued, Math::max));
+            }
+            published.save(this.tickAckedSequenceId.get());
+            // 无 TickMessage，暂停 1ms
+            try {
+                Thread.sleep(1);
+            }catch (InterruptedException e) {
+                logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                break;
             }
         }
     }
+    private CompletableFuture<Void> sendTicks(TickMessage message) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("send tick message with {} ticks at sequenceId {}...", message.ticks.size(), message.sequenceId);
+        }
+        // Kafka 与 Stream 共用同一份 JSON
+        String json = JsonUtil.writeJson(message);
+        CompletableFuture<Void> future;
+        try {
+            future = this.producer.sendMessagesAsync(List.of(message), List.of(json));
+            this.tickMessagesSent++;
+        } catch (Exception e) {
+            // 生产者异常不能终止 tick 线程
+            logger.error("send tick message at sequenceId {} failed.", message.sequenceId, e);
+            future = CompletableFuture.failedFuture(e);
+        }
+        appendStream(RedisCache.Key.STREAM_TICKS, List.of(String.valueOf(message.sequenceId), json));
+        return future;
+    }
     private void runNotifyThread() {
         logger.info("start publish notify to redis...");
+        // 时间窗口内同一用户同一订单的通知只保留最后状态
+        Map<Object, NotificationMessage> coalesced = new LinkedHashMap<>();
+        long windowStart = 0;
+        PublishedMark published = new PublishedMark(PUBLISHED_NOTIFICATION);
         for(;;) {
+            long queued = this.queuedSequenceId;
             NotificationMessage msg = notificationQueue.poll();
             if(msg != null) {
-                redisService.publish(RedisCache.Topic.NOTIFICATION, JsonUtil.writeJson(msg));
-            } else {
-                try {
-                    Thread.sleep(1);
-                }catch (InterruptedException e) {
-                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                if(coalesced.isEmpty())
+                    windowStart = System.currentTimeMillis();
+                Object key = msg.data instanceof OrderEntity order ? new NotificationKey(msg.userId, order.id) : msg;
+                coalesced.put(key, msg);
+                if(coalesced.size() < 1000)
+                    continue;
+            }
+            if(!coalesced.isEmpty() && (msg != null
+                    || System.currentTimeMillis() - windowStart >= this.notificationCoalesceMillis)) {
+                if(!publishNotifications(coalesced.values()))
                     break;
-                }
+                coalesced.clear();
+                continue;
+            }
+            // 队列已空且没有待合并的通知，之前的通知都已发布
+            if(coalesced.isEmpty())
+                published.save(queued);
+            try {
+                Thread.sleep(1);
+            }catch (InterruptedException e) {
+                logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                break;
             }
         }
     }
+    // 按 userId 分片后 pipeline 发送，被中断时返回 false
+    private boolean publishNotifications(Collection<NotificationMessage> messages) {
+        Map<String, List<String>> channelMessages = new HashMap<>();
+        for(NotificationMessage message : messages) {
+            String channel = this.notificationChannels[RedisCache.Topic.notificationShard(message.userId,
+                    this.notificationChannels.length)];
+            channelMessages.computeIfAbsent(channel, k -> new ArrayList<>()).add(JsonUtil.writeJson(message));
+        }
+        if(logger.isDebugEnabled())
+            logger.debug("publish {} notifications to {} channels.", messages.size(), channelMessages.size());
+        return publishWithRetry(channelMessages);
+    }
     private void runApiResultThread() {
         logger.info("start publish api result to redis...");
+        PublishedMark published = new PublishedMark(PUBLISHED_API_RESULT);
         for(;;) {
-            ApiResultMessage msg = apiResultQueue.poll();
-            if(msg != null) {
-                redisService.publish(RedisCache.Topic.TRADING_API_RESULT, JsonUtil.writeJson(msg));
+            long queued = this.queuedSequenceId;
+            // 按网关频道分组后 pipeline 发送
+            Map<String, List<String>> channelMessages = new HashMap<>();
+            int count = 0;
+            ApiResult result;
+            while(count < 1000 && (result = apiResultQueue.poll()) != null) {
+                channelMessages.computeIfAbsent(result.channel(), k -> new ArrayList<>())
+                        .add(JsonUtil.writeJson(result.message()));
+                count++;
+            }
+            if(count > 0) {
+                if(!publishWithRetry(channelMessages))
+                    break;
             } else {
+                // 队列已空，之前的结果都已发布
+                published.save(queued);
                 try {
                     Thread.sleep(1);
                 }catch (InterruptedException e) {
@@ -190,19 +532,42 @@ public class TradingEngineService extends LoggerSupport {
     private void runOrderBookThread() {
         logger.info("start update orderBook snapshot to redis...");
         long lastSequenceId = 0;
+        long minIntervalNanos = this.orderBookMaxPublishPerSecond > 0 ? 1_000_000_000L / this.orderBookMaxPublishPerSecond : 0;
+        long nextPublishNanos = 0;
         for(;;) {
             // 获取OrderBookBean的引用，确保后续操作针对局部变量而非成员变量
             final OrderBookBean orderBook = this.lastedOrderBook;
-            // 仅在OrderBookBean更新后刷新Redis
-            if(orderBook != null && orderBook.sequenceId > lastSequenceId) {
+            long start = System.nanoTime();
+            // 仅在OrderBookBean更新后刷新Redis，限速期间的中间状态被合并，到期后总是发布最新状态
+            if(orderBook != null && orderBook.sequenceId > lastSequenceId && start - nextPublishNanos >= 0) {
                 if(logger.isDebugEnabled())
                     logger.debug("update orderBook snapshot at sequenceId {}...", orderBook.sequenceId);
+                // 每个档位序列化一次
+                String[] args = new String[this.orderBookTierDepths.length * 3 + 1];
+                args[0] = String.valueOf(orderBook.sequenceId);
+                for(int i = 0; i < this.orderBookTierDepths.length; i++) {
+                    String json = JsonUtil.writeJson(orderBook.withDepth(this.orderBookTierDepths[i]));
+                    // 频道推送原始 JSON，缓存的快照按配置压缩，未压缩时传空串避免重复传输
+                    String cache = redisService.compress(json);
+                    args[i * 3 + 1] = json;
+                    args[i * 3 + 2] = this.orderBookTierChannels[i];
+                    args[i * 3 + 3] = CompressUtil.isCompressed(cache) ? cache : "";
+                }
                 redisService.executeScriptReturnBoolean(this.shaUpdateOrderBookLua,
-                        // key: [cache key]
-                        new String[] {RedisCache.Key.ORDER_BOOK},
-                        // args: [sequenceId, json-data]
-                        new String[] {String.valueOf(orderBook.sequenceId), JsonUtil.writeJson(orderBook)});
+                        // keys: [cache key of each tier]
+                        this.orderBookTierKeys,
+                        // args: [sequenceId, json-data, channel, cache-data, ...]
+                        args);
+                // 完整深度的快照写入 Stream
+                appendStream(RedisCache.Key.STREAM_ORDER_BOOK, List.of(args[0], args[args.length - 3]));
                 lastSequenceId = orderBook.sequenceId;
+                // 平滑 Redis 耗时，耗时变长时自动降低发布频率
+                long elapsed = System.nanoTime() - start;
+                long avg = this.orderBookPublishNanos;
+                avg = avg == 0 ? elapsed : (avg * 7 + elapsed) / 8;
+                this.orderBookPublishNanos = avg;
+                this.orderBookPublished++;
+                nextPublishNanos = start + Math.max(minIntervalNanos, avg * this.orderBookLatencyFactor);
             } else {
                 try {
                     Thread.sleep(1);
@@ -213,6 +578,263 @@ public class TradingEngineService extends LoggerSupport {
             }
         }
     }
+    private void runBboThread() {
+        logger.info("start publish bbo to redis...");
+        while(!Thread.currentThread().isInterrupted()) {
+            // 队列中积压的 BBO 按顺序 pipeline 发送，无积压时逐条发送
+            List<String> messages = null;
+            List<String> entries = null;
+            BestBidOfferBean bbo;
+            while((bbo = bboQueue.poll()) != null) {
+                if(messages == null) {
+                    messages = new ArrayList<>();
+                    entries = new ArrayList<>();
+                }
+                String message = bbo.toMessage();
+                messages.add(message);
+                entries.add(String.valueOf(bbo.sequenceId));
+                entries.add(message);
+                if(messages.size() >= 1000)
+                    break;
+            }
+            if(messages == null) {
+                // 低延迟要求，只短暂暂停
+                LockSupport.parkNanos(50_000);
+                continue;
+            }
+            try {
+                if(messages.size() == 1) {
+                    redisService.publish(RedisCache.Topic.BEST_BID_OFFER, messages.getFirst());
+                } else {
+                    redisService.publishAll(Map.of(RedisCache.Topic.BEST_BID_OFFER, messages));
+                }
+            } catch (Exception e) {
+                logger.warn("publish {} bbo failed: {}", messages.size(), e.getMessage());
+            }
+            // 先发布再写 Stream，不增加实时订阅者的延迟
+            appendStream(RedisCache.Key.STREAM_BEST_BID_OFFER, entries);
+        }
+        logger.warn("{} was interrupted.", Thread.currentThread().getName());
+    }
+
+    // 发布失败时重试直到成功，已发布的位置不会越过未发布的输出；等待重试时被中断返回 false
+    private boolean publishWithRetry(Map<String, List<String>> channelMessages) {
+        for(;;) {
+            try {
+                redisService.publishAll(channelMessages);
+                return true;
+            } catch (Exception e) {
+                logger.warn("publish to {} channels failed, retry later: {}", channelMessages.size(), e.getMessage());
+            }
+            try {
+                Thread.sleep(PUBLISH_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                return false;
+            }
+        }
+    }
+
+    // 一个输出通道已确认发布的 sequenceId，由该通道的线程限频写入 Redis
+    // 写入的值只会小于实际位置，重启时多重新发布一部分输出，不会遗漏
+    private class PublishedMark {
+        final String channel;
+        long saved = 0;
+        long savedAt = 0;
+
+        PublishedMark(String channel) {
+            this.channel = channel;
+        }
+
+        void save(long sequenceId) {
+            long now = System.currentTimeMillis();
+            if(sequenceId <= this.saved || now - this.savedAt < PUBLISHED_SAVE_MILLIS)
+                return;
+            this.savedAt = now;
+            try {
+                redisService.hset(RedisCache.Key.ENGINE_PUBLISHED, this.channel, String.valueOf(sequenceId));
+                this.saved = sequenceId;
+            } catch (Exception e) {
+                logger.warn("save published sequenceId of {} failed: {}", this.channel, e.getMessage());
+            }
+        }
+    }
+
+    // entries 依次为 sequenceId 和数据，Lua 脚本跳过不大于 Stream 最后 id 的数据
+    // Stream 只是行情的补充通道，Redis 出错时记录日志后跳过，不影响调用线程继续发送
+    private void appendStream(String key, List<String> entries) {
+        if(this.streamMaxLength <= 0)
+            return;
+        String[] args = new String[entries.size() + 1];
+        args[0] = String.valueOf(this.streamMaxLength);
+        for(int i = 0; i < entries.size(); i += 2) {
+            args[i + 1] = entries.get(i);
+            // 数据按配置压缩
+            args[i + 2] = redisService.compress(entries.get(i + 1));
+        }
+        try {
+            redisService.executeScriptReturnLong(this.shaAppendStreamLua, new String[] {key}, args);
+        } catch (Exception e) {
+            logger.warn("append {} entries to stream {} failed: {}", entries.size() / 2, key, e.getMessage());
+        }
+    }
+
+    // 小于完整深度的档位使用独立的 key 和频道，完整深度沿用原有的 key 和频道
+    void initOrderBookTiers() {
+        int[] depths = Arrays.stream(this.orderBookTiers)
+                .filter(depth -> depth > 0 && depth < this.orderBookDepth)
+                .distinct().sorted().toArray();
+        int n = depths.length + 1;
+        this.orderBookTierDepths = Arrays.copyOf(depths, n);
+        this.orderBookTierDepths[n - 1] = this.orderBookDepth;
+        this.orderBookTierKeys = new String[n];
+        this.orderBookTierChannels = new String[n];
+        for(int i = 0; i < n - 1; i++) {
+            this.orderBookTierKeys[i] = RedisCache.Key.orderBook(depths[i]);
+            this.orderBookTierChannels[i] = RedisCache.Topic.orderBook(depths[i]);
+        }
+        this.orderBookTierKeys[n - 1] = RedisCache.Key.ORDER_BOOK;
+        this.orderBookTierChannels[n - 1] = RedisCache.Topic.ORDER_BOOK;
+        logger.info("publish orderBook tiers: {}", Arrays.toString(this.orderBookTierDepths));
+    }
+
+    // orderBook 快照发布统计
+    public Map<String, Long> getOrderBookStats() {
+        long snapshots = this.orderBookSnapshots;
+        long published = this.orderBookPublished;
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("snapshots", snapshots);
+        stats.put("published", published);
+        stats.put("skipped", Math.max(0, snapshots - published));
+        stats.put("publishLatencyMicros", this.orderBookPublishNanos / 1000);
+        return stats;
+    }
+
+    // 实例标识，用于比对各实例的摘要
+    private String instanceId() {
+        return (this.standby ? "standby@" : "primary@") + IpUtil.getHostId();
+    }
+
+    private void runDigestThread() {
+        logger.info("start publish state digest...");
+        for(;;) {
+            StateDigest digest = this.digestQueue.poll();
+            if(digest == null) {
+                try {
+                    Thread.sleep(10);
+                }catch (InterruptedException e) {
+                    logger.warn("{} was interrupted.", Thread.currentThread().getName());
+                    break;
+                }
+                continue;
+            }
+            this.lastDigest = digest;
+            publishDigest(digest);
+        }
+    }
+
+    // 写入同一 sequenceId 的摘要 hash 并与其他实例比对，后写入的实例负责发现不一致
+    private void publishDigest(StateDigest digest) {
+        String instance = instanceId();
+        try {
+            Map<String, String> all = redisService.hsetAndGetAll(RedisCache.Key.engineDigest(digest.sequenceId()),
+                    instance, digest.digest(), 3600);
+            redisService.publish(RedisCache.Topic.ENGINE_DIGEST,
+                    digest.sequenceId() + "," + instance + "," + digest.digest());
+            for(Map.Entry<String, String> entry : all.entrySet()) {
+                if(!entry.getValue().equals(digest.digest()))
+                    logger.error("state digest mismatch at sequenceId {}: {} = {}, {} = {}", digest.sequenceId(),
+                            instance, digest.digest(), entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("publish state digest at sequenceId {} failed.", digest.sequenceId());
+        }
+    }
+
+    // 备用实例提升为主实例，从下一个事件开始产生输出
+    public void promote() {
+        if(!this.standby)
+            return;
+        logger.warn("promote standby engine to primary at sequenceId {}.", this.lastSequenceId);
+        this.snapshotRequested = true;
+        this.standby = false;
+    }
+
+    // 在不产生任何输出的临时引擎上处理合成事件，预热 MatchEngine / ClearingService / AssetService 的热点路径
+    // 临时引擎出错时只结束预热，不影响服务启动
+    WarmupResult warmUp(int events, long maxMillis) {
+        logger.info("warm up trading engine with {} synthetic events...", events);
+        TradingEngineService engine = createWarmupEngine();
+        SyntheticEventGenerator generator = new SyntheticEventGenerator(42, 1000, 20, this.zoneId,
+                System.currentTimeMillis());
+        long start = System.currentTimeMillis();
+        long processed = 0;
+        boolean failed = false;
+        while(!failed && processed < events && System.currentTimeMillis() - start < maxMillis) {
+            List<AbstractEvent> batch = generator.next((int) Math.min(500, events - processed));
+            try {
+                engine.processMessages(batch);
+                // 临时引擎没有分发线程，直接丢弃结果
+                engine.drainResults();
+            } catch (RuntimeException e) {
+                logger.warn("warm up failed at event {}.", processed, e);
+                failed = true;
+            }
+            processed += batch.size();
+            failed = failed || engine.fatalError;
+        }
+        WarmupResult result = new WarmupResult(processed, System.currentTimeMillis() - start,
+                engine.orderService.getActiveOrders().size());
+        if(failed)
+            logger.warn("warm up stopped by error after {} events.", processed);
+        logger.info("warm up finished: {} events in {} ms, {} active orders left.", result.events(),
+                result.millis(), result.activeOrders());
+        return result;
+    }
+
+    // 不产生输出、出错不退出进程的临时引擎
+    TradingEngineService createWarmupEngine() {
+        TradingEngineService engine = new TradingEngineService();
+        engine.zoneId = this.zoneId;
+        engine.assetService = new AssetService();
+        engine.orderService = new OrderService(engine.assetService);
+        engine.matchEngine = new MatchEngine();
+        engine.clearingService = new ClearingService(engine.assetService, engine.orderService);
+        engine.standby = true;
+        engine.exitOnPanic = false;
+        engine.digestInterval = 0;
+        engine.resultRingSize = 1024;
+        return engine;
+    }
+
+    public Map<String, Object> getEngineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("role", this.standby ? "standby" : "primary");
+        stats.put("lastSequenceId", this.lastSequenceId);
+        stats.put("replayedEvents", this.replayedEvents);
+        if(this.warmupResult != null) {
+            stats.put("warmupEvents", this.warmupResult.events());
+            stats.put("warmupMillis", this.warmupResult.millis());
+        }
+        stats.put("stateHash", StateHash.toHex(stateHash()));
+        StateDigest digest = this.lastDigest;
+        if(digest != null) {
+            stats.put("digestSequenceId", digest.sequenceId());
+            stats.put("digest", digest.digest());
+        }
+        return stats;
+    }
+
+    // tick 发送统计，inFlight 持续增长或 failed 增加说明发送跟不上或有丢失
+    public Map<String, Long> getTickStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("sent", this.tickMessagesSent);
+        stats.put("inFlight", (long) this.producer.getInFlightMessages());
+        stats.put("failed", this.producer.getFailedMessages());
+        stats.put("queued", (long) this.tickQueue.size());
+        return stats;
+    }
+
     private void runDbThread() {
         logger.info("start batch insert to db...");
         for(;;) {
@@ -264,8 +886,12 @@ public class TradingEngineService extends LoggerSupport {
     }
 
     private void panic() {
-        logger.error("application panic, exit now....");
         this.fatalError = true;
+        if(!this.exitOnPanic) {
+            logger.error("engine panic, stop processing events.");
+            return;
+        }
+        logger.error("application panic, exit now....");
         System.exit(1);
     }
 
@@ -273,12 +899,73 @@ public class TradingEngineService extends LoggerSupport {
         this.orderBookChanged = false;
         for(AbstractEvent message : messages)
             processEvent(message);
-        if(orderBookChanged) {
+        // 每批比较一次最优买卖价，只发布批次结束时的变化
+        if(this.orderBookChanged && !messages.isEmpty())
+            checkBestBidOffer(this.lastSequenceId, messages.getLast().createdAt);
+        // 通知分发线程本批次结束
+        ResultSlot slot = claimSlot();
+        slot.type = ResultSlot.Type.BATCH_END;
+        slot.sequenceId = this.lastSequenceId;
+        this.resultRing.publish();
+        if(this.snapshotRequested) {
+            this.snapshotRequested = false;
+            this.orderBookChanged = true;
+        }
+        if(orderBookChanged && !this.standby && !this.replaying) {
             // 保存最新的快照
             this.lastedOrderBook = this.matchEngine.getOrderBook(this.orderBookDepth);
+            this.orderBookSnapshots++;
         }
     }
 
+    private ResultRing resultRing() {
+        if(this.resultRing == null)
+            this.resultRing = new ResultRing(this.resultRingSize);
+        return this.resultRing;
+    }
+
+    // 申请结果槽位，缓冲区已满时等待分发线程
+    private ResultSlot claimSlot() {
+        ResultRing ring = resultRing();
+        ResultSlot slot;
+        while((slot = ring.tryClaim()) == null) {
+            if(this.fanOutThread == null) {
+                // 未启动分发线程(如单元测试)，由当前线程直接消费
+                ring.publish();
+                drainResults();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        slot.replay = this.replaying;
+        slot.standby = this.standby;
+        return slot;
+    }
+
+    // 订单ID = sequenceId * 10000 + yyyyMM，缓存当月起止时间避免每次创建 ZonedDateTime
+    long orderIdOf(long sequenceId, long ts) {
+        if(ts < this.monthStartMillis || ts >= this.monthEndMillis) {
+            ZonedDateTime zdt = Instant.ofEpochMilli(ts).atZone(this.zoneId);
+            ZonedDateTime monthStart = zdt.toLocalDate().withDayOfMonth(1).atStartOfDay(this.zoneId);
+            this.monthStartMillis = monthStart.toInstant().toEpochMilli();
+            this.monthEndMillis = monthStart.plusMonths(1).toInstant().toEpochMilli();
+            this.yearMonth = zdt.getYear() * 100 + zdt.getMonthValue();
+        }
+        return sequenceId * 10000 + this.yearMonth;
+    }
+
+    // 把本批次的 tick 合并为一个有序的 TickMessage
+    void flushTicks() {
+        if(this.batchTicks.isEmpty())
+            return;
+        TickMessage msg = new TickMessage();
+        msg.sequenceId = this.batchTicks.getLast().sequenceId;
+        msg.createdAt = this.batchTickCreatedAt;
+        msg.ticks = this.batchTicks;
+        this.tickQueue.add(msg);
+        this.batchTicks = new ArrayList<>();
+    }
+
     public void processEvent(AbstractEvent event) {
         // 前置条件
         if(this.fatalError)
@@ -292,17 +979,69 @@ public class TradingEngineService extends LoggerSupport {
             // 事件发生丢失
             logger.warn("event lost: expected previous id {} but actual {} for event {}", this.lastSequenceId,
                     event.previousId, event);
-            // 尝试恢复
-            List<AbstractEvent> events = this.storeService.loadEventsFromBd(this.lastSequenceId);
-            if(events.isEmpty()) {
-                logger.error("can't read lost events from db.");
-                panic();
+            // 尝试恢复，成功后继续处理当前事件
+            if(!recover(event.previousId))
                 return;
+        }
+        applyEvent(event);
+    }
+
+    // 各输出通道已确认发布位置的最小值，之前事件的输出都已发布
+    // 缺少任一通道或读取失败时返回 0(重放时全部重新发布)
+    long loadPublishedSequenceId() {
+        try {
+            Map<String, String> published = this.redisService.hgetAll(RedisCache.Key.ENGINE_PUBLISHED);
+            long min = Long.MAX_VALUE;
+            for(String channel : List.of(PUBLISHED_TICK, PUBLISHED_API_RESULT, PUBLISHED_NOTIFICATION)) {
+                String value = published.get(channel);
+                if(value == null)
+                    return 0;
+                min = Math.min(min, Long.parseLong(value));
             }
-            for(AbstractEvent e : events)
-                this.processEvent(e);
-            return;
+            logger.info("outputs were published up to sequenceId {}: {}", min, published);
+            return min;
+        } catch (Exception e) {
+            logger.warn("load published sequenceId failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // 从db按页加载并重放 (lastSequenceId, targetSequenceId] 之间的事件
+    // 输出已发布过的事件只更新状态和写入db；本实例未收到且输出未发布的事件(运行中丢失)正常发布 tick、结果和通知
+    private boolean recover(long targetSequenceId) {
+        long start = System.currentTimeMillis();
+        long startSequenceId = this.lastSequenceId;
+        long replayed = 0;
+        try {
+            while(this.lastSequenceId < targetSequenceId) {
+                List<AbstractEvent> events = this.storeService.loadEventsFromBd(this.lastSequenceId);
+                if(events.isEmpty() || events.getFirst().sequenceId > targetSequenceId) {
+                    logger.error("can't read lost events from db after sequenceId {}.", this.lastSequenceId);
+                    panic();
+                    return false;
+                }
+                for(AbstractEvent e : events) {
+                    if(e.sequenceId > targetSequenceId)
+                        break;
+                    this.replaying = e.sequenceId <= this.publishedSequenceId;
+                    applyEvent(e);
+                    if(this.fatalError)
+                        return false;
+                    replayed++;
+                }
+            }
+        } finally {
+            this.replaying = false;
+            this.replayedEvents += replayed;
         }
+        // 重放期间可能未发布 BBO，恢复后在批次结束时发布完整的 orderBook 快照
+        this.snapshotRequested = true;
+        logger.info("replayed {} events from sequenceId {} to {} in {} ms.", replayed, startSequenceId,
+                this.lastSequenceId, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private void applyEvent(AbstractEvent event) {
         if(event.previousId != this.lastSequenceId) {
             logger.warn("bad event: expected previous id {} but actual {} for event {}", this.lastSequenceId,
                     event.previousId, event);
@@ -329,6 +1068,9 @@ public class TradingEngineService extends LoggerSupport {
             return;
         }
         this.lastSequenceId = event.sequenceId;
+        if(this.digestInterval > 0 && event.sequenceId % this.digestInterval == 0) {
+            this.digestQueue.add(new StateDigest(event.sequenceId, StateHash.toHex(stateHash())));
+        }
         if (logger.isDebugEnabled()) {
             logger.debug("set last processed sequence id: {}...", this.lastSequenceId);
         }
@@ -338,81 +1080,61 @@ public class TradingEngineService extends LoggerSupport {
     }
 
     void createOrder(OrderRequestEvent event) {
-        ZonedDateTime zdt = Instant.ofEpochMilli(event.createdAt).atZone(this.zoneId);
-        int year = zdt.getYear();
-        int month = zdt.getMonth().getValue();
-        long orderId = event.sequenceId * 10000 + (year * 100 + month);
+        long orderId = orderIdOf(event.sequenceId, event.createdAt);
         OrderEntity order = this.orderService.createOrder(event.sequenceId, event.createdAt,
                 orderId, event.userId, event.direction, event.price, event.quantity);
+        ResultSlot slot = claimSlot();
+        slot.sequenceId = event.sequenceId;
+        slot.createdAt = event.createdAt;
+        slot.refId = event.refId;
+        slot.gatewayId = event.gatewayId;
         if(order == null) {
             logger.warn("create order failed.");
             // 推送失败结果
-            this.apiResultQueue.add(ApiResultMessage.createOrderFailed(event.refId, event.createdAt));
+            slot.type = ResultSlot.Type.ORDER_FAILED;
+            this.resultRing.publish();
             return;
         }
         MatchResult result = this.matchEngine.processOrder(event.sequenceId, order);
         this.clearingService.clearMatchResult(result);
-        // 推送成功结果
-        // 必须复制一份OrderEntity，因为将异步序列化
-        this.apiResultQueue.add(ApiResultMessage.orderSuccess(event.refId, order.copy(), event.createdAt));
         this.orderBookChanged = true;
-        // 收集 Notification
-        List<NotificationMessage> notifications = new ArrayList<>();
-        notifications.add(createNotification(event.createdAt, "order_matched", order.userId, order.copy()));
-        // 收集已完成的 OrderEntity
-        if(!result.matchDetails.isEmpty()) {
-            List<OrderEntity> closedOrders = new ArrayList<>();
-            List<MatchDetailEntity> matchDetails = new ArrayList<>();
-            List<TickEntity> ticks = new ArrayList<>();
-            if(result.takerOrder.status.isFinalStatus) {
-                closedOrders.add(result.takerOrder);
-            }
-            for(MatchDetailRecord detail : result.matchDetails) {
-                OrderEntity maker = detail.makerOrder();
-                if(maker.status.isFinalStatus) {
-                    closedOrders.add(maker);
-                }
-                MatchDetailEntity takerDetail = generateMatchDetailEntity(event.sequenceId, event.createdAt, detail, true);
-                MatchDetailEntity makerDetail = generateMatchDetailEntity(event.sequenceId, event.createdAt, detail, false);
-                matchDetails.add(takerDetail);
-                matchDetails.add(makerDetail);
-                TickEntity tick = new TickEntity();
-                tick.sequenceId = event.sequenceId;
-                tick.takerUserId = detail.takerOrder().userId;
-                tick.makerUserId = detail.makerOrder().userId;
-                tick.price = detail.price();
-                tick.quantity = detail.quantity();
-                tick.takerDirection = detail.takerOrder().direction == Direction.BUY;
-                tick.createdAt = event.createdAt;
-                ticks.add(tick);
-            }
-            // 异步写入db
-            this.orderQueue.add(closedOrders);
-            this.matchQueue.add(matchDetails);
-            // 异步发送 tick 消息
-            TickMessage msg = new TickMessage();
-            msg.sequenceId = event.sequenceId;
-            msg.ticks = ticks;
-            this.tickQueue.add(msg);
-            // 异步通知orderMatch
-            this.notificationQueue.addAll(notifications);
+        // 写入订单快照与成交明细，由分发线程构造结果、通知、tick 和待写入db的实体
+        slot.type = ResultSlot.Type.ORDER_CREATED;
+        slot.snapshotOrder(order);
+        for(MatchDetailRecord detail : result.matchDetails) {
+            slot.addFill(detail.price(), detail.quantity(), detail.makerOrder());
         }
+        this.resultRing.publish();
     }
 
     void cancelOrder(OrderCancelEvent event) {
         OrderEntity order = this.orderService.getOrder(event.refOrderId);
+        ResultSlot slot = claimSlot();
+        slot.sequenceId = event.sequenceId;
+        slot.createdAt = event.createdAt;
+        slot.refId = event.refId;
+        slot.gatewayId = event.gatewayId;
         // 订单不存在或与用户不匹配
         if(order == null || order.userId.longValue() != event.userId.longValue()) {
             // 发送失败消息
-            this.apiResultQueue.add(ApiResultMessage.createOrderFailed(event.refId, event.createdAt));
+            slot.type = ResultSlot.Type.CANCEL_FAILED;
+            this.resultRing.publish();
             return;
         }
         this.matchEngine.cancel(event.createdAt, order);
         this.clearingService.clearCancelResult(order);
         this.orderBookChanged = true;
-        // 发送取消成功消息(这里不用复制)
-        this.apiResultQueue.add(ApiResultMessage.orderSuccess(event.refId, order, event.createdAt));
-        this.notificationQueue.add(createNotification(event.createdAt, "order_canceled", event.userId, order));
+        // 发送取消成功消息
+        slot.type = ResultSlot.Type.ORDER_CANCELED;
+        slot.order = order;
+        this.resultRing.publish();
+    }
+
+    private void checkBestBidOffer(long sequenceId, long ts) {
+        BestBidOfferBean bbo = this.matchEngine.updateBestBidOffer(sequenceId, ts);
+        // 备用实例也需要更新 BBO 状态，提升后只发布新的变化
+        if(bbo != null && !this.standby)
+            this.bboQueue.add(bbo);
     }
 
     boolean transfer(TransferEvent event) {
@@ -429,27 +1151,39 @@ public class TradingEngineService extends LoggerSupport {
         return msg;
     }
 
-    MatchDetailEntity generateMatchDetailEntity(long sequenceId, long ts, MatchDetailRecord detail, boolean forTaker) {
+    MatchDetailEntity generateMatchDetailEntity(long sequenceId, long ts, BigDecimal price, BigDecimal quantity,
+                                                OrderEntity taker, OrderEntity maker, boolean forTaker) {
         MatchDetailEntity d = new MatchDetailEntity();
         d.sequenceId = sequenceId;
-        d.orderId = forTaker ? detail.takerOrder().id : detail.makerOrder().id;
-        d.counterOrderId = forTaker ? detail.makerOrder().id : detail.takerOrder().id;
-        d.direction = forTaker ? detail.takerOrder().direction : detail.makerOrder().direction;
-        d.price = detail.price();
-        d.quantity = detail.quantity();
+        d.orderId = forTaker ? taker.id : maker.id;
+        d.counterOrderId = forTaker ? maker.id : taker.id;
+        d.direction = forTaker ? taker.direction : maker.direction;
+        d.price = price;
+        d.quantity = quantity;
         d.type = forTaker ? MatchType.TAKER : MatchType.MAKER;
-        d.userId = forTaker ? detail.takerOrder().userId : detail.makerOrder().userId;
-        d.counterUserId = forTaker ? detail.makerOrder().userId : detail.takerOrder().userId;
+        d.userId = forTaker ? taker.userId : maker.userId;
+        d.counterUserId = forTaker ? maker.userId : taker.userId;
         d.createdAt = ts;
         return d;
     }
 
     // 验证完整性
+    // 资产、订单簿和最新价的滚动哈希，每次状态变化时增量更新，相同事件序列在各实例上得到相同结果
+    long stateHash() {
+        return this.assetService.getStateHash() + this.matchEngine.getStateHash();
+    }
+
+    // 遍历全部状态重新计算，用于校验滚动哈希
+    long computeStateHash() {
+        return this.assetService.computeStateHash() + this.matchEngine.computeStateHash();
+    }
+
     void validate() {
         logger.debug("start validate...");
         validateAssets();
         validateOrders();
         validateMatchEngine();
+        require(stateHash() == computeStateHash(), "state hash mismatch at sequenceId " + this.lastSequenceId);
         logger.debug("validate done.");
     }
 
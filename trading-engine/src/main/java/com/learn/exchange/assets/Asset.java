@@ -9,6 +9,8 @@ public class Asset {
     BigDecimal available;
     // 冻结余额
     BigDecimal frozen;
+    // 由 userId 和资产类型得到，用于计算状态哈希
+    long hashKey;
 
     public Asset() {
         this(BigDecimal.ZERO, BigDecimal.ZERO);
@@ -1,6 +1,7 @@
 package com.learn.exchange.assets;
 
 import com.learn.exchange.enums.AssetEnum;
+import com.learn.exchange.state.StateHash;
 import com.learn.exchange.support.LoggerSupport;
 import org.springframework.stereotype.Component;
 
@@ -13,6 +14,8 @@ import java.util.concurrent.ConcurrentMap;
 public class AssetService extends LoggerSupport{
     // UserId -> Map(AssetEnum -> Asset(available/frozen))
     final ConcurrentMap<Long, ConcurrentMap<AssetEnum, Asset>> userAssets = new ConcurrentHashMap<>();
+    // 所有资产的滚动哈希，每次修改资产时增量更新
+    private long stateHash = 0;
 
     public Asset getAsset(Long userId, AssetEnum assetId) {
         ConcurrentMap<AssetEnum, Asset> asset = userAssets.get(userId);
@@ -32,6 +35,28 @@ public class AssetService extends LoggerSupport{
         return this.userAssets;
     }
 
+    public long getStateHash() {
+        return this.stateHash;
+    }
+
+    // 遍历全部资产重新计算哈希，用于校验增量结果
+    public long computeStateHash() {
+        long hash = 0;
+        for(ConcurrentMap<AssetEnum, Asset> assets : this.userAssets.values()) {
+            for(Asset asset : assets.values())
+                hash += StateHash.asset(asset.hashKey, asset.available, asset.frozen);
+        }
+        return hash;
+    }
+
+    // 所有对资产的修改都经过这里，以便更新滚动哈希
+    private void update(Asset asset, BigDecimal available, BigDecimal frozen) {
+        this.stateHash -= StateHash.asset(asset.hashKey, asset.available, asset.frozen);
+        asset.available = available;
+        asset.frozen = frozen;
+        this.stateHash += StateHash.asset(asset.hashKey, available, frozen);
+    }
+
     // 除用户存入资产操作，其他常规操作均需检查余额 checkBalance
     public void transfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId,
                          BigDecimal amount) {
@@ -43,6 +68,24 @@ public class AssetService extends LoggerSupport{
             logger.debug("transfer asset {} from {} ==> {}, amount={}", assetId, fromUser, toUser, amount);
     }
 
+    // 获取用户资产，不存在时初始化
+    public Asset getOrInitAsset(Long userId, AssetEnum assetId) {
+        Asset asset = getAsset(userId, assetId);
+        if(asset == null)
+            asset = initAsset(userId, assetId);
+        return asset;
+    }
+
+    // 通过已解析的资产引用冻结，避免再次查找
+    public boolean tryFreeze(Asset asset, BigDecimal amount) {
+        if(amount.signum() < 0)
+            throw new IllegalArgumentException("Negative amount.");
+        if(asset.available.compareTo(amount) < 0)
+            return false;
+        update(asset, asset.available.subtract(amount), asset.frozen.add(amount));
+        return true;
+    }
+
     public boolean tryFreeze(Long userId, AssetEnum assetId, BigDecimal amount) {
         boolean ok = tryTransfer(Transfer.AVAILABLE_TO_FROZEN, userId, userId, assetId, amount, true);
         if(ok && logger.isDebugEnabled())
@@ -50,6 +93,14 @@ public class AssetService extends LoggerSupport{
         return ok;
     }
 
+    public void unfreeze(Asset asset, BigDecimal amount) {
+        if(amount.signum() < 0)
+            throw new IllegalArgumentException("Negative amount.");
+        if(asset.frozen.compareTo(amount) < 0)
+            throw new RuntimeException("unfreeze failed for asset " + asset + ", amount=" + amount);
+        update(asset, asset.available.add(amount), asset.frozen.subtract(amount));
+    }
+
     public void unfreeze(Long userId, AssetEnum assetId, BigDecimal amount) {
         if(!tryTransfer(Transfer.FROZEN_TO_AVAILABLE, userId, userId, assetId, amount, true))
             throw new RuntimeException("unfreeze failed for user " + userId +
@@ -59,6 +110,38 @@ public class AssetService extends LoggerSupport{
         }
     }
 
+    // 单边操作：扣减冻结资产，用于清算时汇总后一次性结算
+    public void deductFrozen(Long userId, AssetEnum assetId, BigDecimal amount) {
+        Asset asset = getAsset(userId, assetId);
+        if(asset == null)
+            throw new RuntimeException("deduct frozen failed for user " + userId +
+                    ", asset " + assetId + ", amount=" + amount);
+        deductFrozen(asset, amount);
+    }
+
+    public void deductFrozen(Asset asset, BigDecimal amount) {
+        if(amount.signum() == 0)
+            return;
+        if(amount.signum() < 0)
+            throw new IllegalArgumentException("Negative amount.");
+        if(asset.frozen.compareTo(amount) < 0)
+            throw new RuntimeException("deduct frozen failed for asset " + asset + ", amount=" + amount);
+        update(asset, asset.available, asset.frozen.subtract(amount));
+    }
+
+    // 单边操作：增加可用资产，需与 deductFrozen 成对使用以保证总量不变
+    public void addAvailable(Long userId, AssetEnum assetId, BigDecimal amount) {
+        addAvailable(getOrInitAsset(userId, assetId), amount);
+    }
+
+    public void addAvailable(Asset asset, BigDecimal amount) {
+        if(amount.signum() == 0)
+            return;
+        if(amount.signum() < 0)
+            throw new IllegalArgumentException("Negative amount.");
+        update(asset, asset.available.add(amount), asset.frozen);
+    }
+
     public boolean tryTransfer(Transfer type, Long fromUser, Long toUser, AssetEnum assetId,
                                BigDecimal amount, boolean checkBalance) {
         if(amount.signum() == 0)
@@ -79,22 +162,22 @@ public class AssetService extends LoggerSupport{
                 // 需要检查余额且余额不足
                 if(checkBalance && fromAsset.available.compareTo(amount) < 0)
                     yield false;
-                fromAsset.available = fromAsset.available.subtract(amount);
-                toAsset.available = toAsset.available.add(amount);
+                update(fromAsset, fromAsset.available.subtract(amount), fromAsset.frozen);
+                update(toAsset, toAsset.available.add(amount), toAsset.frozen);
                 yield true;
             }
             case AVAILABLE_TO_FROZEN -> {
                 if(checkBalance && fromAsset.available.compareTo(amount) < 0)
                     yield false;
-                fromAsset.available = fromAsset.available.subtract(amount);
-                toAsset.frozen = toAsset.frozen.add(amount);
+                update(fromAsset, fromAsset.available.subtract(amount), fromAsset.frozen);
+                update(toAsset, toAsset.available, toAsset.frozen.add(amount));
                 yield true;
             }
             case FROZEN_TO_AVAILABLE -> {
                 if(checkBalance && fromAsset.frozen.compareTo(amount) < 0)
                     yield false;
-                fromAsset.frozen = fromAsset.frozen.subtract(amount);
-                toAsset.available = toAsset.available.add(amount);
+                update(fromAsset, fromAsset.available, fromAsset.frozen.subtract(amount));
+                update(toAsset, toAsset.available.add(amount), toAsset.frozen);
                 yield true;
             }
             // 若枚举情况全覆盖，则不需要default
@@ -106,7 +189,9 @@ public class AssetService extends LoggerSupport{
         ConcurrentMap<AssetEnum, Asset> map = userAssets.computeIfAbsent(userId,
                 k -> new ConcurrentHashMap<>());
         Asset zeroAsset = new Asset();
+        zeroAsset.hashKey = StateHash.assetKey(userId, assetId.ordinal());
         map.put(assetId, zeroAsset);
+        this.stateHash += StateHash.asset(zeroAsset.hashKey, zeroAsset.available, zeroAsset.frozen);
         return zeroAsset;
     }
 }
@@ -1,11 +1,12 @@
 package com.learn.exchange.clearing;
 
+import com.learn.exchange.assets.Asset;
 import com.learn.exchange.assets.AssetService;
-import com.learn.exchange.assets.Transfer;
 import com.learn.exchange.enums.AssetEnum;
 import com.learn.exchange.match.MatchDetailRecord;
 import com.learn.exchange.match.MatchResult;
 import com.learn.exchange.model.trade.OrderEntity;
+import com.learn.exchange.order.ActiveOrder;
 import com.learn.exchange.order.OrderService;
 import com.learn.exchange.support.LoggerSupport;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +26,15 @@ public class ClearingService extends LoggerSupport {
         this.orderService = orderService;
     }
 
+    // taker 一侧按资产汇总后结算一次，maker 按每笔成交结算
     public void clearMatchResult(MatchResult result) {
         OrderEntity taker = result.takerOrder;
         List<MatchDetailRecord> matchDetails = result.matchDetails;
+        if(matchDetails.isEmpty())
+            return;
+        // 成交总量 / 成交总额(按 maker 价格)
+        BigDecimal totalQuantity = BigDecimal.ZERO;
+        BigDecimal totalQuote = BigDecimal.ZERO;
         switch (taker.direction) {
             case BUY -> {
                 for(MatchDetailRecord detail : matchDetails) {
@@ -39,23 +46,23 @@ public class ClearingService extends LoggerSupport {
                     }
                     OrderEntity maker = detail.makerOrder();
                     BigDecimal matched = detail.quantity();
-                    if(maker.price.compareTo(taker.price) < 0) {
-                        // 实际买入价比报价低，部分 USD 退回账户
-                        assetService.unfreeze(taker.userId, AssetEnum.USD,
-                                taker.price.subtract(maker.price).multiply(matched));
-                        logger.debug("unfree extra unused quote {} back to taker user {}",
-                                taker.price.subtract(maker.price).multiply(matched), taker.userId);
-                    }
-                    // 买方USD转入卖方账户
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId,
-                            AssetEnum.USD, maker.price.multiply(matched));
-                    // 卖方BTC转入买方账户
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId,
-                            AssetEnum.BTC, matched);
+                    BigDecimal quote = maker.price.multiply(matched);
+                    totalQuantity = totalQuantity.add(matched);
+                    totalQuote = totalQuote.add(quote);
+                    // 卖方冻结的BTC转出，收到USD
+                    assetService.deductFrozen(asset(maker, AssetEnum.BTC), matched);
+                    assetService.addAvailable(asset(maker, AssetEnum.USD), quote);
                     // 删除完全成交的 maker
                     if(maker.unfilledQuantity.signum() == 0)
                         orderService.removeOrder(maker.id);
                 }
+                // 买方按报价冻结的USD全部扣除，实际买入价比报价低的部分退回账户
+                BigDecimal frozenUsed = taker.price.multiply(totalQuantity);
+                Asset takerQuote = asset(taker, AssetEnum.USD);
+                assetService.deductFrozen(takerQuote, frozenUsed);
+                assetService.addAvailable(takerQuote, frozenUsed.subtract(totalQuote));
+                // 买方收到BTC
+                assetService.addAvailable(asset(taker, AssetEnum.BTC), totalQuantity);
                 // 删除完全成交的 taker
                 if(taker.unfilledQuantity.signum() == 0)
                     orderService.removeOrder(taker.id);
@@ -70,15 +77,18 @@ public class ClearingService extends LoggerSupport {
                     }
                     OrderEntity maker = detail.makerOrder();
                     BigDecimal matched = detail.quantity();
-                    // 卖方BTC转入买方账户
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, taker.userId, maker.userId,
-                            AssetEnum.BTC, matched);
-                    // 买方USD转入卖方账户
-                    assetService.transfer(Transfer.FROZEN_TO_AVAILABLE, maker.userId, taker.userId,
-                            AssetEnum.USD, maker.price.multiply(matched));
+                    BigDecimal quote = maker.price.multiply(matched);
+                    totalQuantity = totalQuantity.add(matched);
+                    totalQuote = totalQuote.add(quote);
+                    // 买方冻结的USD转出，收到BTC
+                    assetService.deductFrozen(asset(maker, AssetEnum.USD), quote);
+                    assetService.addAvailable(asset(maker, AssetEnum.BTC), matched);
                     if(maker.unfilledQuantity.signum() == 0)
                         orderService.removeOrder(maker.id);
                 }
+                // 卖方冻结的BTC转出，收到USD
+                assetService.deductFrozen(asset(taker, AssetEnum.BTC), totalQuantity);
+                assetService.addAvailable(asset(taker, AssetEnum.USD), totalQuote);
                 if(taker.unfilledQuantity.signum() == 0)
                     orderService.removeOrder(taker.id);
             }
@@ -90,15 +100,22 @@ public class ClearingService extends LoggerSupport {
         switch (order.direction) {
             case BUY -> {
                 // 解冻USD = 价格 x 未成交数量
-                assetService.unfreeze(order.userId, AssetEnum.USD, order.price.multiply(order.unfilledQuantity));
+                assetService.unfreeze(asset(order, AssetEnum.USD), order.price.multiply(order.unfilledQuantity));
             }
             case SELL -> {
                 // 解冻BTC = 未成交数量
-                assetService.unfreeze(order.userId, AssetEnum.BTC, order.unfilledQuantity);
+                assetService.unfreeze(asset(order, AssetEnum.BTC), order.unfilledQuantity);
             }
             default -> throw new IllegalArgumentException("Invalid direction: " + order.direction);
         }
         // 从OrderService中删除订单
         orderService.removeOrder(order.id);
     }
+
+    // 订单创建时已解析的资产引用，非引擎创建的订单回退到按用户查找
+    private Asset asset(OrderEntity order, AssetEnum assetId) {
+        if(order instanceof ActiveOrder active)
+            return assetId == AssetEnum.BTC ? active.baseAsset : active.quoteAsset;
+        return assetService.getOrInitAsset(order.userId, assetId);
+    }
 }
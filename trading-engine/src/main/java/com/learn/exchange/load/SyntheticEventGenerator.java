@@ -0,0 +1,203 @@
+package com.learn.exchange.load;
+
+import com.learn.exchange.enums.AssetEnum;
+import com.learn.exchange.enums.Direction;
+import com.learn.exchange.enums.UserType;
+import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.message.event.OrderCancelEvent;
+import com.learn.exchange.message.event.OrderRequestEvent;
+import com.learn.exchange.message.event.TransferEvent;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+// 用固定的随机种子生成可重现的事件流：
+// 充值、围绕移动中间价的限价单、批量撤单、做市商刷新报价
+public class SyntheticEventGenerator {
+
+    // 做市商用户 id 从 MARKET_MAKER_BASE 开始，普通用户从 USER_BASE 开始
+    static final long MARKET_MAKER_BASE = 10000L;
+    static final long USER_BASE = 100000L;
+
+    static final BigDecimal INITIAL_USD = new BigDecimal("100000000000");
+    static final BigDecimal INITIAL_BTC = new BigDecimal("10000000");
+
+    final Random random;
+    final ZoneId zoneId;
+    final int users;
+    final int marketMakers;
+
+    // 中间价(单位: 0.01 USD)
+    long midCents = 3000000;
+    long sequenceId;
+    long createdAt;
+
+    // 最近下单的 [orderId, userId]，用于生成撤单
+    final long[][] recentOrders = new long[4096][];
+    int recentCount = 0;
+    // 做市商当前挂出的买卖报价 orderId
+    final long[][] quotes;
+
+    // 尚待输出的事件(一次动作可能产生多个事件)
+    final Deque<AbstractEvent> pending = new ArrayDeque<>();
+
+    public SyntheticEventGenerator(long seed, int users, int marketMakers, ZoneId zoneId, long startTs) {
+        this(seed, users, marketMakers, zoneId, startTs, 0);
+    }
+
+    public SyntheticEventGenerator(long seed, int users, int marketMakers, ZoneId zoneId, long startTs,
+                                   long lastSequenceId) {
+        this.random = new Random(seed);
+        this.users = users;
+        this.marketMakers = marketMakers;
+        this.zoneId = zoneId;
+        this.createdAt = startTs;
+        this.sequenceId = lastSequenceId;
+        this.quotes = new long[marketMakers][];
+        // 所有用户先充值
+        for(int i = 0; i < marketMakers; i++)
+            deposit(MARKET_MAKER_BASE + i);
+        for(int i = 0; i < users; i++)
+            deposit(USER_BASE + i);
+    }
+
+    public List<AbstractEvent> next(int count) {
+        List<AbstractEvent> events = new ArrayList<>(count);
+        while(events.size() < count) {
+            while(pending.isEmpty())
+                generate();
+            events.add(pending.poll());
+        }
+        return events;
+    }
+
+    public AbstractEvent next() {
+        while(pending.isEmpty())
+            generate();
+        return pending.poll();
+    }
+
+    public long getLastSequenceId() {
+        return this.sequenceId;
+    }
+
+    void generate() {
+        // 中间价随机游走
+        midCents = Math.max(100000, midCents + random.nextInt(-50, 51));
+        int p = random.nextInt(1000);
+        if(p < 700) {
+            limitOrder();
+        } else if(p < 900) {
+            refreshQuotes();
+        } else if(p < 980) {
+            cancelBurst();
+        } else {
+            deposit(randomUser());
+        }
+    }
+
+    // 围绕中间价的限价单，小部分会穿过盘口成交
+    void limitOrder() {
+        Long userId = randomUser();
+        Direction direction = random.nextBoolean() ? Direction.BUY : Direction.SELL;
+        long offset = Math.abs((long) (random.nextGaussian() * 300));
+        // 约20%的订单主动成交
+        boolean aggressive = random.nextInt(5) == 0;
+        long priceCents = (direction == Direction.BUY) == aggressive ? midCents + offset : midCents - offset;
+        BigDecimal quantity = BigDecimal.valueOf(random.nextInt(1, 200), 2);
+        order(userId, direction, priceCents, quantity);
+    }
+
+    // 做市商撤销旧报价并重新挂买卖单
+    void refreshQuotes() {
+        if(marketMakers == 0) {
+            limitOrder();
+            return;
+        }
+        int mm = random.nextInt(marketMakers);
+        Long userId = MARKET_MAKER_BASE + mm;
+        long[] old = quotes[mm];
+        if(old != null) {
+            cancel(userId, old[0]);
+            cancel(userId, old[1]);
+        }
+        long spread = random.nextInt(5, 50);
+        BigDecimal quantity = BigDecimal.valueOf(random.nextInt(50, 500), 2);
+        long bid = order(userId, Direction.BUY, midCents - spread, quantity);
+        long ask = order(userId, Direction.SELL, midCents + spread, quantity);
+        quotes[mm] = new long[] { bid, ask };
+    }
+
+    // 连续撤销若干最近的订单(已成交的订单撤单会失败，与真实情况一致)
+    void cancelBurst() {
+        int n = Math.min(recentCount, random.nextInt(5, 30));
+        for(int i = 0; i < n; i++) {
+            long[] order = recentOrders[random.nextInt(recentCount)];
+            cancel(order[1], order[0]);
+        }
+    }
+
+    long order(Long userId, Direction direction, long priceCents, BigDecimal quantity) {
+        OrderRequestEvent event = createEvent(new OrderRequestEvent());
+        event.userId = userId;
+        event.direction = direction;
+        event.price = BigDecimal.valueOf(priceCents, 2);
+        event.quantity = quantity;
+        long orderId = orderId(event);
+        if(recentCount < recentOrders.length) {
+            recentOrders[recentCount++] = new long[] { orderId, userId };
+        } else {
+            recentOrders[random.nextInt(recentOrders.length)] = new long[] { orderId, userId };
+        }
+        return orderId;
+    }
+
+    void cancel(long userId, long orderId) {
+        OrderCancelEvent event = createEvent(new OrderCancelEvent());
+        event.userId = userId;
+        event.refOrderId = orderId;
+    }
+
+    void deposit(long userId) {
+        deposit(userId, AssetEnum.USD, INITIAL_USD);
+        deposit(userId, AssetEnum.BTC, INITIAL_BTC);
+    }
+
+    void deposit(long userId, AssetEnum asset, BigDecimal amount) {
+        TransferEvent event = createEvent(new TransferEvent());
+        event.fromUserId = UserType.DEBT.getInternalUserId();
+        event.toUserId = userId;
+        event.asset = asset;
+        event.amount = amount.setScale(AssetEnum.SCALE, RoundingMode.DOWN);
+        event.sufficient = false;
+    }
+
+    Long randomUser() {
+        return USER_BASE + random.nextInt(users);
+    }
+
+    <T extends AbstractEvent> T createEvent(T event) {
+        event.previousId = this.sequenceId;
+        this.sequenceId++;
+        event.sequenceId = this.sequenceId;
+        this.createdAt += random.nextInt(3);
+        event.createdAt = this.createdAt;
+        event.refId = "load-" + this.sequenceId;
+        pending.add(event);
+        return event;
+    }
+
+    // 与 TradingEngineService 生成 orderId 的规则一致
+    long orderId(OrderRequestEvent event) {
+        ZonedDateTime zdt = Instant.ofEpochMilli(event.createdAt).atZone(this.zoneId);
+        return event.sequenceId * 10000 + (zdt.getYear() * 100 + zdt.getMonthValue());
+    }
+}
@@ -1,9 +1,11 @@
 package com.learn.exchange.match;
 
+import com.learn.exchange.bean.BestBidOfferBean;
 import com.learn.exchange.bean.OrderBookBean;
 import com.learn.exchange.enums.Direction;
 import com.learn.exchange.enums.OrderStatus;
 import com.learn.exchange.model.trade.OrderEntity;
+import com.learn.exchange.state.StateHash;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
@@ -14,6 +16,11 @@ public class MatchEngine {
     public final OrderBook sellBook = new OrderBook(Direction.SELL);
     public BigDecimal marketPrice = BigDecimal.ZERO; // 最新市场价
     private long sequenceId; // 上次处理的Sequence ID
+    // 上次发布的最优买卖价及数量
+    private BigDecimal bidPrice = null;
+    private BigDecimal bidQuantity = null;
+    private BigDecimal askPrice = null;
+    private BigDecimal askQuantity = null;
 
     public MatchResult processOrder(long sequenceId, OrderEntity order) {
         return switch (order.direction) {
@@ -47,12 +54,12 @@ public class MatchEngine {
             takerUnfilledQuantity = takerUnfilledQuantity.subtract(matchedQuantity);
             BigDecimal markerUnfilledQuantity = makerOrder.unfilledQuantity.subtract(matchedQuantity);
             if(markerUnfilledQuantity.signum() == 0) {
-                // 对手盘完全成交后，从订单簿删除
-                makerOrder.updateOrder(markerUnfilledQuantity, OrderStatus.FULLY_FILLED, ts);
+                // 对手盘完全成交后，从订单簿删除(先删除，订单簿按删除前的数量更新哈希)
                 makerBook.remove(makerOrder);
+                makerOrder.updateOrder(markerUnfilledQuantity, OrderStatus.FULLY_FILLED, ts);
             } else {
                 // 对手盘部分成交
-                makerOrder.updateOrder(markerUnfilledQuantity, OrderStatus.PARTIAL_FILLED, ts);
+                makerBook.updateOrder(makerOrder, markerUnfilledQuantity, OrderStatus.PARTIAL_FILLED, ts);
             }
             if(takerUnfilledQuantity.signum() == 0) {
                 // Taker 订单完全成交，退出循环
@@ -79,6 +86,36 @@ public class MatchEngine {
         order.updateOrder(order.unfilledQuantity, status, ts);
     }
 
+    // 订单簿与最新价的滚动哈希
+    public long getStateHash() {
+        return this.buyBook.getStateHash() + this.sellBook.getStateHash() + StateHash.price(this.marketPrice);
+    }
+
+    public long computeStateHash() {
+        return this.buyBook.computeStateHash() + this.sellBook.computeStateHash() + StateHash.price(this.marketPrice);
+    }
+
+    // 最优买卖价或其数量变化时返回新的 BBO，否则返回 null
+    public BestBidOfferBean updateBestBidOffer(long sequenceId, long ts) {
+        BigDecimal bidPrice = this.buyBook.getFirstLevelPrice();
+        BigDecimal askPrice = this.sellBook.getFirstLevelPrice();
+        BigDecimal bidQuantity = this.buyBook.getFirstLevelQuantity();
+        BigDecimal askQuantity = this.sellBook.getFirstLevelQuantity();
+        if(equals(bidPrice, this.bidPrice) && equals(bidQuantity, this.bidQuantity)
+                && equals(askPrice, this.askPrice) && equals(askQuantity, this.askQuantity))
+            return null;
+        this.bidPrice = bidPrice;
+        this.bidQuantity = bidQuantity;
+        this.askPrice = askPrice;
+        this.askQuantity = askQuantity;
+        return new BestBidOfferBean(sequenceId, ts, bidPrice, bidQuantity, askPrice, askQuantity);
+    }
+
+    // 不要使用 BigDecimal.equals()，精度不同也视为相等
+    private static boolean equals(BigDecimal a, BigDecimal b) {
+        return a == null ? b == null : b != null && a.compareTo(b) == 0;
+    }
+
     public OrderBookBean getOrderBook(int maxDepth) {
         return new OrderBookBean(this.sequenceId, this.marketPrice,
                 this.buyBook.getOrderBook(maxDepth), this.sellBook.getOrderBook(maxDepth));
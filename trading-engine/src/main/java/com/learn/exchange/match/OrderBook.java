@@ -2,13 +2,21 @@ package com.learn.exchange.match;
 
 import com.learn.exchange.bean.OrderBookItemBean;
 import com.learn.exchange.enums.Direction;
+import com.learn.exchange.enums.OrderStatus;
 import com.learn.exchange.model.trade.OrderEntity;
+import com.learn.exchange.state.StateHash;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 public class OrderBook {
     public final Direction direction;
     public final TreeMap<OrderKey, OrderEntity> book;
+    // 订单簿中所有订单(id, 价格, 未成交数量)的滚动哈希
+    private long stateHash = 0;
+    // 第一档的价格和总数量，随订单增删改增量更新，订单簿为空时为 null
+    private BigDecimal firstLevelPrice = null;
+    private BigDecimal firstLevelQuantity = null;
 
     public OrderBook(Direction direction) {
         this.direction = direction;
@@ -19,16 +27,91 @@ public class OrderBook {
         return book.isEmpty() ? null : book.firstEntry().getValue();
     }
     public boolean remove(OrderEntity order) {
-        return this.book.remove(new OrderKey(order.sequenceId, order.price)) != null;
+        OrderEntity removed = this.book.remove(new OrderKey(order.sequenceId, order.price));
+        if(removed == null)
+            return false;
+        this.stateHash -= hash(removed);
+        removeFromFirstLevel(removed);
+        return true;
     }
     public boolean add(OrderEntity order) {
-        return this.book.put(new OrderKey(order.sequenceId, order.price), order) == null;
+        OrderEntity old = this.book.put(new OrderKey(order.sequenceId, order.price), order);
+        if(old != null) {
+            this.stateHash -= hash(old);
+            removeFromFirstLevel(old);
+        }
+        this.stateHash += hash(order);
+        if(this.firstLevelPrice == null || compare(order.price, this.firstLevelPrice) < 0) {
+            // 新的第一档
+            this.firstLevelPrice = order.price;
+            this.firstLevelQuantity = order.unfilledQuantity;
+        } else if(order.price.compareTo(this.firstLevelPrice) == 0) {
+            this.firstLevelQuantity = this.firstLevelQuantity.add(order.unfilledQuantity);
+        }
+        return old == null;
+    }
+    // 更新订单簿中订单的未成交数量
+    public void updateOrder(OrderEntity order, BigDecimal unfilledQuantity, OrderStatus status, long updatedAt) {
+        this.stateHash -= hash(order);
+        if(order.price.compareTo(this.firstLevelPrice) == 0)
+            this.firstLevelQuantity = this.firstLevelQuantity.add(unfilledQuantity).subtract(order.unfilledQuantity);
+        order.updateOrder(unfilledQuantity, status, updatedAt);
+        this.stateHash += hash(order);
+    }
+    // 已从 book 中删除的订单在第一档时扣减数量，第一档为空后从下一档重新汇总
+    private void removeFromFirstLevel(OrderEntity removed) {
+        if(removed.price.compareTo(this.firstLevelPrice) != 0)
+            return;
+        this.firstLevelQuantity = this.firstLevelQuantity.subtract(removed.unfilledQuantity);
+        if(this.firstLevelQuantity.signum() == 0)
+            sumFirstLevel();
+    }
+    private void sumFirstLevel() {
+        if(this.book.isEmpty()) {
+            this.firstLevelPrice = null;
+            this.firstLevelQuantity = null;
+            return;
+        }
+        BigDecimal price = this.book.firstKey().price();
+        BigDecimal quantity = BigDecimal.ZERO;
+        for(OrderEntity order : this.book.values()) {
+            if(order.price.compareTo(price) != 0)
+                break;
+            quantity = quantity.add(order.unfilledQuantity);
+        }
+        this.firstLevelPrice = price;
+        this.firstLevelQuantity = quantity;
+    }
+    // 价格优先顺序：小于 0 表示 a 优于 b
+    private int compare(BigDecimal a, BigDecimal b) {
+        return this.direction == Direction.BUY ? b.compareTo(a) : a.compareTo(b);
+    }
+    public long getStateHash() {
+        return this.stateHash;
+    }
+    // 遍历全部订单重新计算哈希，用于校验增量结果
+    public long computeStateHash() {
+        long hash = 0;
+        for(OrderEntity order : this.book.values())
+            hash += hash(order);
+        return hash;
+    }
+    private long hash(OrderEntity order) {
+        return StateHash.order(this.direction == Direction.BUY, order.id, order.price, order.unfilledQuantity);
     }
     public boolean exist(OrderEntity order) {
         return this.book.containsKey(new OrderKey(order.sequenceId, order.price));
     }
     public int size() { return this.book.size();}
 
+    // 第一档(最优价格)的价格和总数量，订单簿为空时返回 null
+    public BigDecimal getFirstLevelPrice() {
+        return this.firstLevelPrice;
+    }
+    public BigDecimal getFirstLevelQuantity() {
+        return this.firstLevelQuantity;
+    }
+
     // 对买卖盘中相同价格的订单合并显示
     public List<OrderBookItemBean> getOrderBook(int maxDepth) {
         List<OrderBookItemBean> items = new ArrayList<>(maxDepth);
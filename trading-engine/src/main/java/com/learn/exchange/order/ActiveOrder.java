@@ -0,0 +1,20 @@
+package com.learn.exchange.order;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.learn.exchange.assets.Asset;
+import com.learn.exchange.model.trade.OrderEntity;
+
+// 引擎内部的活动订单，创建时解析用户资产引用，清算时直接更新余额无需再查找
+// 写入数据库或异步序列化前需 copy() 为 OrderEntity
+public class ActiveOrder extends OrderEntity {
+    // 用户的 BTC / USD 资产
+    @JsonIgnore
+    public final Asset baseAsset;
+    @JsonIgnore
+    public final Asset quoteAsset;
+
+    public ActiveOrder(Asset baseAsset, Asset quoteAsset) {
+        this.baseAsset = baseAsset;
+        this.quoteAsset = quoteAsset;
+    }
+}
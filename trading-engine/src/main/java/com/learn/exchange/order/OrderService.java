@@ -1,5 +1,6 @@
 package com.learn.exchange.order;
 
+import com.learn.exchange.assets.Asset;
 import com.learn.exchange.assets.AssetService;
 import com.learn.exchange.enums.AssetEnum;
 import com.learn.exchange.enums.Direction;
@@ -28,18 +29,26 @@ public class OrderService {
     // 创建订单，失败返回 null
     public OrderEntity createOrder(long sequenceId, long ts, Long orderId, Long userId, Direction direction,
                                    BigDecimal price, BigDecimal quantity) {
+        // 一次性解析用户资产引用，后续清算直接使用
+        // 冻结成功前不创建资产，避免被拒绝的订单留下空资产
+        Asset baseAsset = assetService.getAsset(userId, AssetEnum.BTC);
+        Asset quoteAsset = assetService.getAsset(userId, AssetEnum.USD);
         switch (direction) {
             case BUY -> {
-                if(!assetService.tryFreeze(userId, AssetEnum.USD, price.multiply(quantity)))
+                if(quoteAsset == null || !assetService.tryFreeze(quoteAsset, price.multiply(quantity)))
                     return null;
+                if(baseAsset == null)
+                    baseAsset = assetService.getOrInitAsset(userId, AssetEnum.BTC);
             }
             case SELL -> {
-                if(!assetService.tryFreeze(userId, AssetEnum.BTC, quantity))
+                if(baseAsset == null || !assetService.tryFreeze(baseAsset, quantity))
                     return null;
+                if(quoteAsset == null)
+                    quoteAsset = assetService.getOrInitAsset(userId, AssetEnum.USD);
             }
             default -> throw new IllegalArgumentException("Invalid Direction type.");
         };
-        OrderEntity order = new OrderEntity();
+        OrderEntity order = new ActiveOrder(baseAsset, quoteAsset);
         order.id = orderId;
         order.sequenceId = sequenceId;
         order.userId = userId;
@@ -0,0 +1,60 @@
+package com.learn.exchange.result;
+
+// 单生产者(引擎线程)/单消费者(分发线程)的预分配环形缓冲区
+public class ResultRing {
+
+    private final ResultSlot[] slots;
+    private final int mask;
+
+    // 生产者已发布的位置 / 消费者已释放的位置
+    private volatile long published = 0;
+    private volatile long consumed = 0;
+    // 生产者已申请但未发布的位置，只由生产者线程访问
+    private long claimed = 0;
+
+    public ResultRing(int capacity) {
+        if(capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be power of 2: " + capacity);
+        this.slots = new ResultSlot[capacity];
+        for(int i = 0; i < capacity; i++)
+            slots[i] = new ResultSlot();
+        this.mask = capacity - 1;
+    }
+
+    // 申请一个槽位，缓冲区已满返回 null
+    public ResultSlot tryClaim() {
+        if(claimed - consumed >= slots.length)
+            return null;
+        ResultSlot slot = slots[(int) (claimed & mask)];
+        claimed++;
+        return slot;
+    }
+
+    // 发布所有已申请的槽位
+    public void publish() {
+        published = claimed;
+    }
+
+    // 消费所有已发布的槽位，返回处理的数量
+    public int drain(SlotHandler handler) {
+        long start = consumed;
+        long end = published;
+        for(long i = start; i < end; i++) {
+            ResultSlot slot = slots[(int) (i & mask)];
+            handler.handle(slot);
+            slot.clear();
+        }
+        if(end > start)
+            consumed = end;
+        return (int) (end - start);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    @FunctionalInterface
+    public interface SlotHandler {
+        void handle(ResultSlot slot);
+    }
+}
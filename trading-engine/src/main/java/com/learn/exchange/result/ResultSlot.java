@@ -0,0 +1,104 @@
+package com.learn.exchange.result;
+
+import com.learn.exchange.enums.OrderStatus;
+import com.learn.exchange.model.trade.OrderEntity;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+// 引擎线程写入的紧凑结果记录，槽位预分配并循环复用
+public class ResultSlot {
+
+    public enum Type {
+        // 下单成功(可能有成交)
+        ORDER_CREATED,
+        // 下单失败
+        ORDER_FAILED,
+        // 取消成功
+        ORDER_CANCELED,
+        // 取消失败
+        CANCEL_FAILED,
+        // 一批事件处理结束
+        BATCH_END
+    }
+
+    public Type type;
+    public long sequenceId;
+    public long createdAt;
+    public String refId;
+    // 发起请求的网关，决定结果发送的频道
+    public String gatewayId;
+    // 恢复时重放的事件，只写入db，不产生结果、通知和 tick
+    public boolean replay;
+    // 写入时引擎为备用实例，分发时丢弃
+    public boolean standby;
+
+    // 订单引用，不可变字段(id/价格/数量等)直接从引用读取
+    public OrderEntity order;
+    // 写入时订单可变字段的快照
+    public BigDecimal unfilledQuantity;
+    public OrderStatus status;
+    public long updatedAt;
+
+    // 成交明细，数组按需扩容后复用
+    public int fillCount;
+    public BigDecimal[] fillPrices = new BigDecimal[4];
+    public BigDecimal[] fillQuantities = new BigDecimal[4];
+    public OrderEntity[] fillMakers = new OrderEntity[4];
+    public boolean[] fillMakerClosed = new boolean[4];
+
+    public void snapshotOrder(OrderEntity order) {
+        this.order = order;
+        this.unfilledQuantity = order.unfilledQuantity;
+        this.status = order.status;
+        this.updatedAt = order.updatedAt;
+    }
+
+    public void addFill(BigDecimal price, BigDecimal quantity, OrderEntity maker) {
+        if(fillCount == fillPrices.length) {
+            int n = fillCount * 2;
+            fillPrices = Arrays.copyOf(fillPrices, n);
+            fillQuantities = Arrays.copyOf(fillQuantities, n);
+            fillMakers = Arrays.copyOf(fillMakers, n);
+            fillMakerClosed = Arrays.copyOf(fillMakerClosed, n);
+        }
+        fillPrices[fillCount] = price;
+        fillQuantities[fillCount] = quantity;
+        fillMakers[fillCount] = maker;
+        fillMakerClosed[fillCount] = maker.status.isFinalStatus;
+        fillCount++;
+    }
+
+    // 按快照复制订单，供异步序列化
+    public OrderEntity copyOrder() {
+        OrderEntity entity = new OrderEntity();
+        entity.id = order.id;
+        entity.sequenceId = order.sequenceId;
+        entity.userId = order.userId;
+        entity.price = order.price;
+        entity.direction = order.direction;
+        entity.quantity = order.quantity;
+        entity.createdAt = order.createdAt;
+        entity.unfilledQuantity = this.unfilledQuantity;
+        entity.status = this.status;
+        entity.updatedAt = this.updatedAt;
+        return entity;
+    }
+
+    // 释放引用，避免已完成订单无法被回收
+    void clear() {
+        refId = null;
+        gatewayId = null;
+        replay = false;
+        standby = false;
+        order = null;
+        unfilledQuantity = null;
+        status = null;
+        for(int i = 0; i < fillCount; i++) {
+            fillPrices[i] = null;
+            fillQuantities[i] = null;
+            fillMakers[i] = null;
+        }
+        fillCount = 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.learn.exchange.state;
+
+import java.math.BigDecimal;
+
+// 可增量更新的状态哈希: 状态哈希为所有元素哈希之和(mod 2^64)，与遍历顺序无关
+// 元素变化时减去旧值的哈希再加上新值的哈希，每次变化 O(1)
+public class StateHash {
+
+    static final long SEED_ASSET = 0x41L;
+    static final long SEED_BUY_ORDER = 0x42L;
+    static final long SEED_SELL_ORDER = 0x53L;
+    static final long SEED_PRICE = 0x50L;
+
+    public static long asset(long key, BigDecimal available, BigDecimal frozen) {
+        return mix(mix(mix(SEED_ASSET, key), of(available)), of(frozen));
+    }
+
+    public static long assetKey(long userId, int assetId) {
+        return mix(userId, assetId);
+    }
+
+    public static long order(boolean buy, long orderId, BigDecimal price, BigDecimal unfilledQuantity) {
+        return mix(mix(mix(buy ? SEED_BUY_ORDER : SEED_SELL_ORDER, orderId), of(price)), of(unfilledQuantity));
+    }
+
+    public static long price(BigDecimal price) {
+        return mix(SEED_PRICE, of(price));
+    }
+
+    public static String toHex(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    // 去掉末尾的 0，使 2.0 与 2.00 的哈希相同
+    static long of(BigDecimal value) {
+        return value.signum() == 0 ? 0 : value.stripTrailingZeros().hashCode();
+    }
+
+    static long mix(long h, long value) {
+        return fmix64(h * 0x9E3779B97F4A7C15L + value);
+    }
+
+    // MurmurHash3 的 64 位 finalizer
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
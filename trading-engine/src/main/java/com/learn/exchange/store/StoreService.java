@@ -22,7 +22,7 @@ public class StoreService extends LoggerSupport {
     DbTemplate dbTemplate;
 
     public List<AbstractEvent> loadEventsFromBd(long lastSequenceId) {
-        List<EventEntity> events = dbTemplate.from(EventEntity.class).where("sequence > ?", lastSequenceId)
+        List<EventEntity> events = dbTemplate.from(EventEntity.class).where("sequenceId > ?", lastSequenceId)
                 .orderBy("sequenceId").limit(100000).list();
         return events.stream().map(event -> (AbstractEvent)messageTypes.deserialize(event.data))
                 .collect(Collectors.toList());
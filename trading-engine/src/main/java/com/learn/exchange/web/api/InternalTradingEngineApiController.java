@@ -1,6 +1,7 @@
 package com.learn.exchange.web.api;
 
 import com.learn.exchange.assets.Asset;
+import com.learn.exchange.TradingEngineService;
 import com.learn.exchange.assets.AssetService;
 import com.learn.exchange.enums.AssetEnum;
 import com.learn.exchange.message.event.TransferEvent;
@@ -22,6 +23,22 @@ public class InternalTradingEngineApiController {
     OrderService orderService;
     @Autowired
     AssetService assetService;
+    @Autowired
+    TradingEngineService tradingEngineService;
+
+    @GetMapping("/stats")
+    public Map<String, Object> getStats() {
+        return Map.of("engine", tradingEngineService.getEngineStats(),
+                "orderBook", tradingEngineService.getOrderBookStats(),
+                "tick", tradingEngineService.getTickStats());
+    }
+
+    // 备用实例提升为主实例
+    @PostMapping("/promote")
+    public Map<String, Object> promote() {
+        tradingEngineService.promote();
+        return tradingEngineService.getEngineStats();
+    }
 
     @GetMapping("/{userId}/assets")
     public Map<AssetEnum, Asset> getUserAssets(@PathVariable("userId") Long userId) {
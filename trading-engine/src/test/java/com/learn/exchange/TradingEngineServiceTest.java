@@ -6,19 +6,31 @@ import com.learn.exchange.enums.AssetEnum;
 import com.learn.exchange.enums.Direction;
 import com.learn.exchange.enums.UserType;
 import com.learn.exchange.match.MatchEngine;
+import com.learn.exchange.message.ApiResultMessage;
+import com.learn.exchange.message.TickMessage;
 import com.learn.exchange.message.event.AbstractEvent;
 import com.learn.exchange.message.event.OrderCancelEvent;
 import com.learn.exchange.message.event.OrderRequestEvent;
 import com.learn.exchange.message.event.TransferEvent;
 import com.learn.exchange.order.OrderService;
+import com.learn.exchange.redis.RedisConfiguration;
+import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.store.StoreService;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TradingEngineServiceTest {
 
@@ -82,6 +94,256 @@ public class TradingEngineServiceTest {
         assertEquals("35216.4", engine.matchEngine.marketPrice.stripTrailingZeros().toPlainString());
     }
 
+    @Test
+    public void testTicksCoalescedPerBatch() {
+        var engine = createTradingEngineService();
+        engine.processMessages(List.of(
+                depositEvent(USER_A, AssetEnum.USD, bd("58000")),
+                depositEvent(USER_C, AssetEnum.BTC, bd("5.5"))));
+        engine.drainResults();
+        assertTrue(engine.tickQueue.isEmpty());
+
+        // 一个批次内的多笔成交只产生一个 TickMessage
+        engine.processMessages(List.of(
+                orderRequestEvent(USER_C, Direction.SELL, bd("2215.6"), bd("0.8")),
+                orderRequestEvent(USER_C, Direction.SELL, bd("2216.1"), bd("0.3")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2220"), bd("0.5")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2220"), bd("0.7"))));
+        engine.drainResults();
+        assertEquals(1, engine.tickQueue.size());
+        TickMessage msg = engine.tickQueue.poll();
+        assertEquals(3, msg.ticks.size());
+        assertEquals(this.currentSequenceId, msg.sequenceId);
+        for(int i = 1; i < msg.ticks.size(); i++)
+            assertTrue(msg.ticks.get(i - 1).sequenceId <= msg.ticks.get(i).sequenceId);
+        assertEquals("2216.1", msg.ticks.getLast().price.stripTrailingZeros().toPlainString());
+    }
+
+    @Test
+    public void testOrderIdMonthBoundary() {
+        var engine = createTradingEngineService();
+        engine.zoneId = ZoneId.of("Asia/Shanghai");
+        long lastMoment = LocalDateTime.parse("2024-12-31T23:59:59.999").atZone(engine.zoneId).toInstant().toEpochMilli();
+        assertEquals(5 * 10000 + 202412L, engine.orderIdOf(5, lastMoment));
+        assertEquals(6 * 10000 + 202501L, engine.orderIdOf(6, lastMoment + 1));
+        assertEquals(7 * 10000 + 202412L, engine.orderIdOf(7, lastMoment - 1000));
+    }
+
+    @Test
+    public void testStandbyDigest() {
+        var primary = createTradingEngineService();
+        var standby = createTradingEngineService();
+        standby.standby = true;
+        primary.digestInterval = standby.digestInterval = 3;
+        List<AbstractEvent> events = new ArrayList<>(List.of(
+                depositEvent(USER_A, AssetEnum.USD, bd("58000")),
+                depositEvent(USER_C, AssetEnum.BTC, bd("5.5")),
+                orderRequestEvent(USER_C, Direction.SELL, bd("2215.6"), bd("0.8")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2220"), bd("0.5")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2210"), bd("0.7"))));
+        AbstractEvent pending = events.getLast();
+        events.add(orderCancelEvent(USER_A, primary.orderIdOf(pending.sequenceId, pending.createdAt)));
+        primary.processMessages(events);
+        standby.processMessages(events);
+        primary.drainResults();
+        standby.drainResults();
+        // 备用实例不产生输出
+        assertEquals(1, primary.tickQueue.size());
+        assertTrue(standby.tickQueue.isEmpty());
+        assertTrue(standby.bboQueue.isEmpty());
+        // 相同事件得到相同的摘要
+        assertEquals(2, primary.digestQueue.size());
+        assertEquals(List.copyOf(primary.digestQueue), List.copyOf(standby.digestQueue));
+        // 提升前写入、提升后才分发的结果不再发送
+        standby.processMessages(List.of(orderRequestEvent(USER_A, Direction.BUY, bd("2216"), bd("0.1"))));
+        standby.promote();
+        standby.drainResults();
+        assertTrue(standby.tickQueue.isEmpty());
+        // 提升后产生输出
+        standby.processMessages(List.of(orderRequestEvent(USER_A, Direction.BUY, bd("2216"), bd("0.1"))));
+        standby.drainResults();
+        assertEquals(1, standby.tickQueue.size());
+        assertTrue(primary.stateHash() != standby.stateHash());
+    }
+
+    @Test
+    public void testRecoverLostEvents() {
+        var primary = createTradingEngineService();
+        List<AbstractEvent> events = new ArrayList<>(List.of(
+                depositEvent(USER_A, AssetEnum.USD, bd("58000")),
+                depositEvent(USER_C, AssetEnum.BTC, bd("5.5")),
+                orderRequestEvent(USER_C, Direction.SELL, bd("2215.6"), bd("0.8")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2220"), bd("0.5")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2216"), bd("0.1"))));
+        primary.processMessages(events);
+        // 运行中丢失的事件未发布过输出，恢复后正常发送 tick
+        var recovering = createRecoveringEngine(events.subList(0, 4));
+        recovering.processMessages(List.of(events.getLast()));
+        recovering.drainResults();
+        assertEquals(primary.stateHash(), recovering.stateHash());
+        assertEquals(4L, recovering.getEngineStats().get("replayedEvents"));
+        assertEquals(2, recovering.matchQueue.size());
+        assertEquals(1, recovering.tickQueue.size());
+        assertEquals(2, recovering.tickQueue.poll().ticks.size());
+        // 重启后重放输出已发布过的事件只写入db，只有最后一个事件产生 tick
+        var restarted = createRecoveringEngine(events.subList(0, 4));
+        restarted.publishedSequenceId = events.get(3).sequenceId;
+        restarted.processMessages(List.of(events.getLast()));
+        restarted.drainResults();
+        assertEquals(primary.stateHash(), restarted.stateHash());
+        assertEquals(2, restarted.matchQueue.size());
+        assertEquals(1, restarted.tickQueue.size());
+        assertEquals(1, restarted.tickQueue.poll().ticks.size());
+    }
+
+    @Test
+    public void testRecoverAfterCrashBetweenTickAndResult() {
+        List<AbstractEvent> events = new ArrayList<>(List.of(
+                depositEvent(USER_A, AssetEnum.USD, bd("58000")),
+                depositEvent(USER_C, AssetEnum.BTC, bd("5.5")),
+                orderRequestEvent(USER_C, Direction.SELL, bd("2215.6"), bd("0.8")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2220"), bd("0.5")),
+                orderRequestEvent(USER_A, Direction.BUY, bd("2216"), bd("0.1"))));
+        for(AbstractEvent e : events)
+            e.refId = "ref-" + e.sequenceId;
+        // 事件 4 的 tick 已确认发送，API 结果未发送时崩溃
+        var restarted = createRecoveringEngine(events.subList(0, 4));
+        var redisService = new PublishedRedisService(Map.of(
+                TradingEngineService.PUBLISHED_TICK, "4",
+                TradingEngineService.PUBLISHED_API_RESULT, "3",
+                TradingEngineService.PUBLISHED_NOTIFICATION, "4"));
+        restarted.redisService = redisService;
+        try {
+            restarted.publishedSequenceId = restarted.loadPublishedSequenceId();
+            assertEquals(3L, restarted.publishedSequenceId);
+            restarted.processMessages(List.of(events.getLast()));
+            restarted.drainResults();
+            // 按最慢的通道重新发布事件 4 的输出，事件 3 的结果不再重复发送
+            List<String> refIds = new ArrayList<>();
+            for(var result = restarted.apiResultQueue.poll(); result != null; result = restarted.apiResultQueue.poll())
+                refIds.add(result.message().refId);
+            assertEquals(List.of("ref-4", "ref-5"), refIds);
+            // 缺少任一通道的位置时全部重新发布
+            restarted.redisService = new PublishedRedisService(Map.of(
+                    TradingEngineService.PUBLISHED_TICK, "4",
+                    TradingEngineService.PUBLISHED_API_RESULT, "3"));
+            assertEquals(0L, restarted.loadPublishedSequenceId());
+        } finally {
+            redisService.shutdown();
+        }
+    }
+
+    // 只返回给定的已发布位置，不会建立连接
+    static class PublishedRedisService extends RedisService {
+        final Map<String, String> published;
+
+        PublishedRedisService(Map<String, String> published) {
+            super(localConfiguration());
+            this.published = published;
+        }
+
+        static RedisConfiguration localConfiguration() {
+            RedisConfiguration config = new RedisConfiguration();
+            config.setHost("localhost");
+            config.setPort(6379);
+            config.setPassword("");
+            return config;
+        }
+
+        @Override
+        public Map<String, String> hgetAll(String key) {
+            return this.published;
+        }
+    }
+
+    // 每次最多从db读取 2 条，丢失的事件需分多次读取
+    TradingEngineService createRecoveringEngine(List<AbstractEvent> stored) {
+        var engine = createTradingEngineService();
+        engine.storeService = new StoreService() {
+            @Override
+            public List<AbstractEvent> loadEventsFromBd(long lastSequenceId) {
+                return stored.stream().filter(e -> e.sequenceId > lastSequenceId).limit(2).toList();
+            }
+        };
+        return engine;
+    }
+
+    @Test
+    public void testRejectedOrderCreatesNoAsset() {
+        var engine = createTradingEngineService();
+        engine.processEvent(depositEvent(USER_A, AssetEnum.USD, bd("100")));
+        long hash = engine.stateHash();
+        // 余额不足和不存在的用户，订单被拒绝后不留下空资产
+        engine.processEvent(orderRequestEvent(USER_A, Direction.BUY, bd("2200"), bd("1")));
+        engine.processEvent(orderRequestEvent(USER_B, Direction.SELL, bd("2200"), bd("1")));
+        assertEquals(1, engine.assetService.getAssets(USER_A).size());
+        assertTrue(engine.assetService.getAssets(USER_B).isEmpty());
+        assertEquals(hash, engine.stateHash());
+    }
+
+    @Test
+    public void testCancelFailedResult() {
+        var engine = createTradingEngineService();
+        engine.processEvent(depositEvent(USER_A, AssetEnum.USD, bd("10000")));
+        var order = orderRequestEvent(USER_A, Direction.BUY, bd("2200"), bd("1"));
+        order.refId = "create";
+        var cancel = orderCancelEvent(USER_B, engine.orderIdOf(order.sequenceId, order.createdAt));
+        cancel.refId = "cancel";
+        // 取消他人的订单失败，返回取消失败而不是创建失败
+        engine.processMessages(List.of(order, cancel));
+        engine.drainResults();
+        assertEquals("create", engine.apiResultQueue.poll().message().refId);
+        ApiResultMessage result = engine.apiResultQueue.poll().message();
+        assertEquals("cancel", result.refId);
+        assertSame(ApiResultMessage.CANCEL_ORDER_FAILED, result.error);
+        assertNull(engine.apiResultQueue.poll());
+    }
+
+    @Test
+    public void testWarmUp() {
+        var engine = createTradingEngineService();
+        var result = engine.warmUp(2000, 10000);
+        assertEquals(2000, result.events());
+        // 预热不影响引擎本身的状态
+        assertEquals(0L, engine.getEngineStats().get("lastSequenceId"));
+        assertTrue(engine.orderService.getActiveOrders().isEmpty());
+        assertTrue(engine.tickQueue.isEmpty());
+    }
+
+    @Test
+    public void testFailingWarmUp() {
+        // 临时引擎处理事件出错时 panic 不退出进程，预热在第一批后结束
+        List<TradingEngineService> warmupEngines = new ArrayList<>();
+        var engine = new TradingEngineService() {
+            @Override
+            TradingEngineService createWarmupEngine() {
+                var broken = super.createWarmupEngine();
+                broken.assetService = null;
+                warmupEngines.add(broken);
+                return broken;
+            }
+        };
+        assertEquals(500, engine.warmUp(2000, 10000).events());
+        assertTrue(warmupEngines.getFirst().fatalError);
+        assertFalse(engine.fatalError);
+        // 临时引擎抛出异常时同样只结束预热
+        var throwing = new TradingEngineService() {
+            @Override
+            TradingEngineService createWarmupEngine() {
+                var broken = new TradingEngineService() {
+                    @Override
+                    public void processMessages(List<AbstractEvent> messages) {
+                        throw new IllegalStateException("broken warm up engine");
+                    }
+                };
+                broken.orderService = new OrderService(new AssetService());
+                return broken;
+            }
+        };
+        assertEquals(500, throwing.warmUp(2000, 10000).events());
+        assertFalse(throwing.fatalError);
+    }
+
     BigDecimal random(Random random, int low, int high) {
         int n = random.nextInt(low, high);
         int m = random.nextInt(100);
@@ -56,6 +56,21 @@ public class AssetServiceTest {
         assertBDEquals(12000, service.getAsset(USER_A, AssetEnum.USD).frozen);
     }
 
+    @Test
+    void deductFrozenAndAddAvailable() {
+        service.tryFreeze(USER_A, AssetEnum.USD, BigDecimal.valueOf(12000));
+        // A frozen USD 10000 -> B available
+        service.deductFrozen(USER_A, AssetEnum.USD, BigDecimal.valueOf(10000));
+        service.addAvailable(USER_B, AssetEnum.USD, BigDecimal.valueOf(10000));
+        assertBDEquals(2000, service.getAsset(USER_A, AssetEnum.USD).frozen);
+        assertBDEquals(10000 + 45600, service.getAsset(USER_B, AssetEnum.USD).available);
+
+        // 冻结不足时失败
+        assertThrows(RuntimeException.class,
+                () -> service.deductFrozen(USER_A, AssetEnum.USD, BigDecimal.valueOf(2001)));
+        assertBDEquals(2000, service.getAsset(USER_A, AssetEnum.USD).frozen);
+    }
+
     @Test
     void unfreeze() {
         // freeze 12000 ok:
@@ -90,6 +105,17 @@ public class AssetServiceTest {
         });
     }
 
+    @Test
+    void stateHash() {
+        long initial = service.getStateHash();
+        // 冻结再解冻后回到原来的哈希，与数值的精度无关
+        service.tryFreeze(USER_A, AssetEnum.USD, new BigDecimal("100.00"));
+        assertNotEquals(initial, service.getStateHash());
+        service.unfreeze(USER_A, AssetEnum.USD, new BigDecimal("100"));
+        assertEquals(initial, service.getStateHash());
+        assertEquals(service.computeStateHash(), service.getStateHash());
+    }
+
     // A: USD=12300, BTC=12, B: USD=45600, C: BTC=34
     void init() {
         service.tryTransfer(Transfer.AVAILABLE_TO_AVAILABLE, DEBT, USER_A,
@@ -107,6 +133,7 @@ public class AssetServiceTest {
 
     // 所有资产总和应为 0
     void verify() {
+        assertEquals(service.computeStateHash(), service.getStateHash());
         BigDecimal totalUSD = BigDecimal.ZERO;
         BigDecimal totalBTC = BigDecimal.ZERO;
         for(Long userId : service.userAssets.keySet()) {
@@ -1,5 +1,7 @@
 package com.learn.exchange.match;
 
+import com.learn.exchange.bean.BestBidOfferBean;
+import com.learn.exchange.bean.OrderBookItemBean;
 import com.learn.exchange.enums.Direction;
 import com.learn.exchange.enums.OrderStatus;
 import com.learn.exchange.model.trade.OrderEntity;
@@ -10,8 +12,11 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MachEngineTest {
@@ -54,6 +59,61 @@ public class MachEngineTest {
 
     }
 
+    @Test
+    void testBestBidOffer() {
+        OrderEntity buy = createOrder(Direction.BUY, "100.00", "1.5");
+        engine.processOrder(buy.sequenceId, buy);
+        BestBidOfferBean bbo = engine.updateBestBidOffer(buy.sequenceId, buy.createdAt);
+        assertEquals("1,1234567890001,100.00,1.5,,", bbo.toMessage());
+        // 不在第一档的订单不改变 BBO
+        OrderEntity lowerBuy = createOrder(Direction.BUY, "99.00", "2");
+        engine.processOrder(lowerBuy.sequenceId, lowerBuy);
+        assertNull(engine.updateBestBidOffer(lowerBuy.sequenceId, lowerBuy.createdAt));
+        // 部分成交改变第一档数量
+        OrderEntity sell = createOrder(Direction.SELL, "100.00", "0.5");
+        engine.processOrder(sell.sequenceId, sell);
+        bbo = BestBidOfferBean.parse(engine.updateBestBidOffer(sell.sequenceId, sell.createdAt).toMessage());
+        assertEquals(0, bd("100").compareTo(bbo.bidPrice));
+        assertEquals(0, bd("1.0").compareTo(bbo.bidQuantity));
+        assertNull(bbo.askPrice);
+        assertNull(bbo.askQuantity);
+    }
+
+    @Test
+    void testFirstLevelTracking() {
+        Random random = new Random(42);
+        List<OrderEntity> pending = new ArrayList<>();
+        for(int i = 0; i < 2000; i++) {
+            if(!pending.isEmpty() && random.nextInt(4) == 0) {
+                OrderEntity order = pending.remove(random.nextInt(pending.size()));
+                // 已完全成交的订单不在订单簿中
+                if(order.unfilledQuantity.signum() > 0)
+                    engine.cancel(order.createdAt, order);
+            } else {
+                Direction direction = random.nextBoolean() ? Direction.BUY : Direction.SELL;
+                OrderEntity order = createOrder(direction, String.valueOf(random.nextInt(95, 106)),
+                        String.valueOf(random.nextInt(1, 10)));
+                engine.processOrder(order.sequenceId, order);
+                if(order.unfilledQuantity.signum() > 0)
+                    pending.add(order);
+            }
+            // 增量维护的第一档与遍历订单簿得到的一致
+            assertFirstLevel(engine.buyBook);
+            assertFirstLevel(engine.sellBook);
+        }
+    }
+
+    void assertFirstLevel(OrderBook book) {
+        List<OrderBookItemBean> items = book.getOrderBook(1);
+        if(items.isEmpty()) {
+            assertNull(book.getFirstLevelPrice());
+            assertNull(book.getFirstLevelQuantity());
+        } else {
+            assertEquals(0, items.getFirst().price.compareTo(book.getFirstLevelPrice()));
+            assertEquals(0, items.getFirst().quantity.compareTo(book.getFirstLevelQuantity()));
+        }
+    }
+
     OrderEntity createOrder(Direction direction, String price, String quantity) {
         this.sequenceId++;
         OrderEntity entity = new OrderEntity();
@@ -0,0 +1,120 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.message.event.AbstractEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryMessagingFactoryTest {
+    InMemoryMessagingFactory factory;
+    List<MessageConsumer> consumers;
+
+    @BeforeEach
+    void init() {
+        factory = new InMemoryMessagingFactory(10, 1000);
+        consumers = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumers.forEach(MessageConsumer::stop);
+    }
+
+    @Test
+    void testEveryGroupReceivesAllMessages() throws InterruptedException {
+        List<AbstractEvent> received1 = new CopyOnWriteArrayList<>();
+        List<AbstractEvent> received2 = new CopyOnWriteArrayList<>();
+        consumers.add(factory.createBatchMessageListener(Messaging.Topic.TRADE, "group1",
+                (List<AbstractEvent> messages) -> received1.addAll(messages)));
+        consumers.add(factory.createBatchMessageListener(Messaging.Topic.TRADE, "group2",
+                (List<AbstractEvent> messages) -> received2.addAll(messages)));
+
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        List<AbstractEvent> events = createEvents(100);
+        producer.sendMessages(events);
+
+        waitFor(() -> received1.size() == 100 && received2.size() == 100);
+        // 按发送顺序收到同一个对象
+        for(int i = 0; i < events.size(); i++) {
+            assertSame(events.get(i), received1.get(i));
+            assertSame(events.get(i), received2.get(i));
+        }
+    }
+
+    @Test
+    void testBatchSize() throws InterruptedException {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        List<AbstractMessage> received = new CopyOnWriteArrayList<>();
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TICK, AbstractEvent.class);
+        consumers.add(factory.createBatchMessageListener(Messaging.Topic.TICK, "group", messages -> {
+            batchSizes.add(messages.size());
+            received.addAll(messages);
+        }));
+        producer.sendMessages(createEvents(95));
+
+        waitFor(() -> received.size() == 95);
+        batchSizes.forEach(size -> assertTrue(size <= 10, "batch size exceed: " + size));
+    }
+
+    @Test
+    void testTopicIsolation() throws InterruptedException {
+        List<AbstractMessage> received = new CopyOnWriteArrayList<>();
+        consumers.add(factory.createBatchMessageListener(Messaging.Topic.TICK, "group", received::addAll));
+        factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class).sendMessages(createEvents(5));
+        factory.createMessageProducer(Messaging.Topic.TICK, AbstractEvent.class).sendMessages(createEvents(3));
+
+        waitFor(() -> received.size() == 3);
+        TimeUnit.MILLISECONDS.sleep(50);
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void testRedeliverFailedBatch() throws InterruptedException {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        List<AbstractMessage> received = new CopyOnWriteArrayList<>();
+        AtomicInteger failures = new AtomicInteger(2);
+        consumers.add(factory.createBatchMessageListener(Messaging.Topic.TRADE, "group", messages -> {
+            batchSizes.add(messages.size());
+            if(failures.getAndDecrement() > 0)
+                throw new IllegalStateException("handler failed.");
+            received.addAll(messages);
+        }));
+        List<AbstractEvent> events = createEvents(1);
+        factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class).sendMessages(events);
+
+        waitFor(() -> received.size() == 1);
+        // 前两次失败，同一批被重新投递，不丢消息
+        assertEquals(List.of(1, 1, 1), batchSizes);
+        assertSame(events.get(0), received.get(0));
+    }
+
+    List<AbstractEvent> createEvents(int n) {
+        List<AbstractEvent> events = new ArrayList<>();
+        for(int i = 1; i <= n; i++) {
+            AbstractEvent event = new AbstractEvent();
+            event.previousId = i - 1;
+            event.sequenceId = i;
+            events.add(event);
+        }
+        return events;
+    }
+
+    void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()) {
+            if(System.currentTimeMillis() > deadline)
+                fail("timeout waiting for messages.");
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+}
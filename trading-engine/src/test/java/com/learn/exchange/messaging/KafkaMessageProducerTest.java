@@ -0,0 +1,51 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.event.AbstractEvent;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KafkaMessageProducerTest {
+
+    @Test
+    public void testSyncSendFailure() {
+        MessageTypes messageTypes = new MessageTypes();
+        messageTypes.init();
+        List<CompletableFuture<SendResult<String, String>>> pending = new ArrayList<>();
+        // 第 3 条消息同步抛出异常，模拟 buffer 已满时 max.block.ms 超时
+        KafkaTemplate<String, String> template = new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of())) {
+            @Override
+            public CompletableFuture<SendResult<String, String>> send(String topic, String data) {
+                if(pending.size() == 2)
+                    throw new TimeoutException("buffer full");
+                CompletableFuture<SendResult<String, String>> future = new CompletableFuture<>();
+                pending.add(future);
+                return future;
+            }
+        };
+        KafkaMessageProducer<AbstractEvent> producer = new KafkaMessageProducer<>("test", template, messageTypes,
+                false, null);
+        CompletableFuture<Void> result = producer.sendMessagesAsync(List.of(event(1), event(2), event(3), event(4)));
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(2, producer.getInFlightMessages());
+        assertEquals(2, producer.getFailedMessages());
+        // 已发送的消息确认后 in-flight 归零
+        pending.forEach(future -> future.complete(null));
+        assertEquals(0, producer.getInFlightMessages());
+    }
+
+    AbstractEvent event(long sequenceId) {
+        AbstractEvent event = new AbstractEvent();
+        event.sequenceId = sequenceId;
+        return event;
+    }
+}
@@ -0,0 +1,164 @@
+package com.learn.exchange.messaging;
+
+import com.learn.exchange.message.event.AbstractEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedFileMessagingFactoryTest {
+    // 很小的段文件，测试中会多次切换段
+    static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    MessageTypes messageTypes;
+    MappedFileMessagingFactory factory;
+
+    @BeforeEach
+    void init() {
+        messageTypes = new MessageTypes();
+        messageTypes.init();
+        factory = createFactory("earliest");
+    }
+
+    @AfterEach
+    void tearDown() {
+        factory.shutdown();
+    }
+
+    @Test
+    void testSendAndReceive() throws InterruptedException {
+        List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+        MessageConsumer consumer = factory.createBatchMessageListener(Messaging.Topic.TRADE, "engine",
+                (List<AbstractEvent> messages) -> received.addAll(messages));
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        producer.sendMessages(createEvents(1, 500));
+
+        waitFor(() -> received.size() == 500);
+        consumer.stop();
+        for(int i = 0; i < 500; i++)
+            assertEquals(i + 1, received.get(i).sequenceId);
+        assertTrue(Files.exists(dir.resolve("TRADE").resolve(String.format("%020d.log", 10))),
+                "segment should be rolled.");
+    }
+
+    @Test
+    void testResumeFromCommittedOffset() throws InterruptedException {
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        producer.sendMessages(createEvents(1, 100));
+        List<AbstractEvent> first = new CopyOnWriteArrayList<>();
+        MessageConsumer consumer = factory.createBatchMessageListener(Messaging.Topic.TRADE, "engine",
+                (List<AbstractEvent> messages) -> first.addAll(messages));
+        waitFor(() -> first.size() == 100);
+        consumer.stop();
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        // 停止期间继续写入，重新订阅后从上次提交的位置继续
+        producer.sendMessages(createEvents(101, 200));
+        List<AbstractEvent> second = new CopyOnWriteArrayList<>();
+        consumer = factory.createBatchMessageListener(Messaging.Topic.TRADE, "engine",
+                (List<AbstractEvent> messages) -> second.addAll(messages));
+        waitFor(() -> second.size() == 100);
+        consumer.stop();
+        assertEquals(101, second.getFirst().sequenceId);
+        assertEquals(200, second.getLast().sequenceId);
+    }
+
+    @Test
+    void testWriterReopen() throws InterruptedException {
+        factory.createMessageProducer(Messaging.Topic.TICK, AbstractEvent.class).sendMessages(createEvents(1, 50));
+        factory.shutdown();
+        // 重新打开后追加到已有数据之后
+        factory = createFactory("earliest");
+        factory.createMessageProducer(Messaging.Topic.TICK, AbstractEvent.class).sendMessages(createEvents(51, 80));
+        List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+        factory.createBatchMessageListener(Messaging.Topic.TICK, "quotation",
+                (List<AbstractEvent> messages) -> received.addAll(messages));
+        waitFor(() -> received.size() == 80);
+        for(int i = 0; i < 80; i++)
+            assertEquals(i + 1, received.get(i).sequenceId);
+    }
+
+    @Test
+    void testLatestSkipsExistingMessages() throws InterruptedException {
+        factory.shutdown();
+        factory = createFactory("latest");
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        producer.sendMessages(createEvents(1, 30));
+        List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+        factory.createBatchMessageListener(Messaging.Topic.TRADE, "late",
+                (List<AbstractEvent> messages) -> received.addAll(messages));
+        producer.sendMessages(createEvents(31, 40));
+        waitFor(() -> received.size() == 10);
+        assertEquals(31, received.getFirst().sequenceId);
+    }
+
+    @Test
+    void testSkipInvalidAndRetryFailedBatch() throws InterruptedException {
+        MessageProducer<AbstractEvent> producer = factory.createMessageProducer(Messaging.Topic.TRADE, AbstractEvent.class);
+        producer.sendMessages(createEvents(1, 5));
+        factory.writers.get(Messaging.Topic.TRADE).append("invalid".getBytes(StandardCharsets.UTF_8));
+        producer.sendMessages(createEvents(6, 10));
+        List<AbstractEvent> received = new CopyOnWriteArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        MessageConsumer consumer = factory.createBatchMessageListener(Messaging.Topic.TRADE, "engine",
+                (List<AbstractEvent> messages) -> {
+                    // 第一次处理失败，从提交的位置重新读取
+                    if(calls.getAndIncrement() == 0)
+                        throw new IllegalStateException("failed");
+                    received.addAll(messages);
+                });
+        waitFor(() -> received.size() == 10);
+        consumer.stop();
+        for(int i = 0; i < 10; i++)
+            assertEquals(i + 1, received.get(i).sequenceId);
+    }
+
+    @Test
+    void testRejectSecondConsumerInGroup() {
+        MessageConsumer consumer = factory.createBatchMessageListener(Messaging.Topic.TRADE, "engine",
+                (List<AbstractEvent> messages) -> {});
+        assertThrows(IllegalStateException.class, () -> factory.createBatchMessageListener(Messaging.Topic.TRADE,
+                "engine", (List<AbstractEvent> messages) -> {}));
+        consumer.stop();
+    }
+
+    MappedFileMessagingFactory createFactory(String offsetReset) {
+        return new MappedFileMessagingFactory(messageTypes, dir.toString(), SEGMENT_SIZE, 64, offsetReset);
+    }
+
+    List<AbstractEvent> createEvents(int from, int to) {
+        List<AbstractEvent> events = new ArrayList<>();
+        for(int i = from; i <= to; i++) {
+            AbstractEvent event = new AbstractEvent();
+            event.previousId = i - 1;
+            event.sequenceId = i;
+            event.createdAt = 1733400000000L + i;
+            events.add(event);
+        }
+        return events;
+    }
+
+    void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(!condition.getAsBoolean()) {
+            if(System.currentTimeMillis() > deadline)
+                fail("timeout waiting for messages.");
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.learn.exchange.messaging;
 
 import com.learn.exchange.message.AbstractMessage;
+import com.learn.exchange.message.TickMessage;
 import com.learn.exchange.message.event.AbstractEvent;
+import com.learn.exchange.model.quotation.TickEntity;
+import com.learn.exchange.util.CompressUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class MessageTypeTest {
     MessageTypes messageTypes;
@@ -31,4 +37,29 @@ public class MessageTypeTest {
         String serialize = messageTypes.serialize(abstractEvent);
         System.out.println(serialize);
     }
+
+    @Test
+    void testCompressedMessage() {
+        TickMessage message = new TickMessage();
+        message.sequenceId = 1001L;
+        message.ticks = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            TickEntity tick = new TickEntity();
+            tick.sequenceId = 1001L;
+            tick.price = new BigDecimal("12345.67");
+            tick.quantity = new BigDecimal("0.5");
+            message.ticks.add(tick);
+        }
+        String plain = messageTypes.serialize(message);
+        messageTypes.compressionMinSize = 1024;
+        String compressed = messageTypes.serialize(message);
+        assertTrue(CompressUtil.isCompressed(compressed));
+        assertTrue(compressed.length() * 3 < plain.length());
+        // 压缩与未压缩的消息都能反序列化
+        for(String data : new String[] {plain, compressed}) {
+            TickMessage result = (TickMessage) messageTypes.deserialize(data);
+            assertEquals(100, result.ticks.size());
+            assertEquals(0, new BigDecimal("12345.67").compareTo(result.ticks.getLast().price));
+        }
+    }
 }
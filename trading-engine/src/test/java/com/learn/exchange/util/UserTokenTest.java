@@ -0,0 +1,24 @@
+package com.learn.exchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserTokenTest {
+
+    @Test
+    public void testVerify() {
+        UserToken userToken = new UserToken("secret");
+        String token = userToken.create(12345L, 2000L);
+        assertEquals(12345L, userToken.verify(token, 1000L));
+        // 过期
+        assertNull(userToken.verify(token, 3000L));
+        // 密钥不同或内容被修改
+        assertNull(new UserToken("other").verify(token, 1000L));
+        String forged = new UserToken("other").create(12345L, 2000L);
+        assertNull(userToken.verify(forged, 1000L));
+        assertNull(userToken.verify(token.substring(1), 1000L));
+        assertNull(userToken.verify("12345", 1000L));
+        assertNull(userToken.verify(null, 1000L));
+    }
+}
@@ -0,0 +1,29 @@
+package com.learn.exchange.push;
+
+import com.learn.exchange.util.UserToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class PushConfiguration implements WebSocketConfigurer {
+
+    @Autowired
+    PushHandler pushHandler;
+
+    // 签发推送凭证的密钥，为空时不接受用户连接，只推送行情
+    @Value("${exchange.config.push.token-secret:}")
+    String tokenSecret = "";
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(this.pushHandler, "/notification")
+                .addInterceptors(new PushHandshakeInterceptor(
+                        this.tokenSecret.isEmpty() ? null : new UserToken(this.tokenSecret)))
+                .setAllowedOriginPatterns("*");
+    }
+}
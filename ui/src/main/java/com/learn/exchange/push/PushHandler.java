@@ -0,0 +1,34 @@
+package com.learn.exchange.push;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+@Component
+public class PushHandler extends TextWebSocketHandler {
+    static final String ATTR_PUSH_SESSION = "pushSession";
+
+    @Autowired
+    PushService pushService;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        Long userId = (Long) session.getAttributes().get(PushHandshakeInterceptor.ATTR_USER_ID);
+        session.getAttributes().put(ATTR_PUSH_SESSION, this.pushService.register(session, userId));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        PushSession pushSession = (PushSession) session.getAttributes().get(ATTR_PUSH_SESSION);
+        if(pushSession != null)
+            this.pushService.unregister(pushSession);
+    }
+
+    // 推送连接不处理客户端消息
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.learn.exchange.push;
+
+import com.learn.exchange.util.UserToken;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+// 从握手请求的 token 参数或 push_token cookie 校验用户凭证，未提供时只推送行情
+// 不信任客户端提供的 userId，凭证无效时拒绝连接
+public class PushHandshakeInterceptor implements HandshakeInterceptor {
+    static final String ATTR_USER_ID = "userId";
+    static final String TOKEN_PARAM = "token";
+    static final String TOKEN_COOKIE = "push_token";
+
+    // 未配置密钥时为 null，不接受任何用户凭证
+    final UserToken userToken;
+
+    public PushHandshakeInterceptor(UserToken userToken) {
+        this.userToken = userToken;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String token = getToken(request);
+        if(token == null)
+            return true;
+        Long userId = this.userToken == null ? null : this.userToken.verify(token, System.currentTimeMillis());
+        if(userId == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        attributes.put(ATTR_USER_ID, userId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    static String getToken(ServerHttpRequest request) {
+        String token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(TOKEN_PARAM);
+        if(token != null)
+            return token;
+        List<String> cookies = request.getHeaders().get("Cookie");
+        if(cookies == null)
+            return null;
+        for(String header : cookies) {
+            for(String cookie : header.split(";")) {
+                int pos = cookie.indexOf('=');
+                if(pos > 0 && cookie.substring(0, pos).trim().equals(TOKEN_COOKIE))
+                    return cookie.substring(pos + 1).trim();
+            }
+        }
+        return null;
+    }
+}
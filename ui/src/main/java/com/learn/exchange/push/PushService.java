@@ -0,0 +1,176 @@
+package com.learn.exchange.push;
+
+import com.learn.exchange.redis.RedisCache;
+import com.learn.exchange.redis.RedisService;
+import com.learn.exchange.support.LoggerSupport;
+import com.learn.exchange.util.CompressUtil;
+import com.learn.exchange.util.JsonUtil;
+import io.lettuce.core.StreamMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 订阅 Redis 的用户通知和行情，推送到本节点的 WebSocket 连接
+// 每条消息只构造一次 TextMessage，由各连接的虚拟线程发送
+@Component
+public class PushService extends LoggerSupport {
+
+    @Autowired
+    RedisService redisService;
+
+    @Value("${exchange.config.notification-shards:16}")
+    int notificationShards = 16;
+    // 本节点负责的分片，如 "0-7" 或 "0,2,4"，空表示全部
+    @Value("${exchange.config.push.shards:}")
+    String shards;
+    @Value("${exchange.config.push.max-pending-messages:1000}")
+    int maxPendingMessages = 1000;
+    // 每次从行情 Stream 读取的条数
+    @Value("${exchange.config.push.stream-read-count:100}")
+    int streamReadCount = 100;
+
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // 所有连接
+    final Set<PushSession> sessions = ConcurrentHashMap.newKeySet();
+    // userId -> 该用户的连接
+    final ConcurrentMap<Long, Set<PushSession>> userSessions = new ConcurrentHashMap<>();
+    // 已读取的行情 Stream 最后 id，重连或出错后从这里继续
+    volatile String lastMarketDataId = "0-0";
+
+    @PostConstruct
+    public void init() {
+        this.executor.execute(this::readMarketDataStream);
+        for(int shard : parseShards(this.shards, this.notificationShards)) {
+            logger.info("subscribe notification shard {}...", shard);
+            this.redisService.subscribe(RedisCache.Topic.notification(shard), this::onNotification);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    public PushSession register(WebSocketSession session, Long userId) {
+        PushSession pushSession = new PushSession(session, userId, this.executor, this.maxPendingMessages);
+        this.sessions.add(pushSession);
+        if(userId != null)
+            this.userSessions.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(pushSession);
+        return pushSession;
+    }
+
+    public void unregister(PushSession pushSession) {
+        this.sessions.remove(pushSession);
+        if(pushSession.userId != null) {
+            this.userSessions.computeIfPresent(pushSession.userId, (k, set) -> {
+                set.remove(pushSession);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    // 从行情 Stream 按批读取，启动时从最后一条快照开始，之后从上次的 id 继续，不需要全量重新同步
+    void readMarketDataStream() {
+        logger.info("start read market data stream...");
+        boolean started = false;
+        while(!Thread.currentThread().isInterrupted()) {
+            try {
+                if(!started) {
+                    StreamMessage<String, String> last = this.redisService.xlast(RedisCache.Key.STREAM_ORDER_BOOK);
+                    if(last != null)
+                        onMarketDataEntry(last);
+                    started = true;
+                }
+                List<StreamMessage<String, String>> messages = this.redisService.xread(
+                        RedisCache.Key.STREAM_ORDER_BOOK, this.lastMarketDataId, this.streamReadCount, 1000);
+                if(messages != null && !messages.isEmpty()) {
+                    // 同一批中只有最新的快照需要推送
+                    onMarketDataEntry(messages.getLast());
+                }
+            } catch (RuntimeException e) {
+                logger.warn("read market data stream failed, retry from {}.", this.lastMarketDataId);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+        logger.warn("market data stream reader was interrupted.");
+    }
+
+    void onMarketDataEntry(StreamMessage<String, String> entry) {
+        this.lastMarketDataId = entry.getId();
+        String data = CompressUtil.decompress(entry.getBody().get(RedisCache.Key.STREAM_DATA_FIELD));
+        if(data != null)
+            onMarketData("{\"type\":\"orderbook\",\"data\":" + data + "}");
+    }
+
+    // 行情广播到所有连接，慢连接只保留最新一份
+    void onMarketData(String payload) {
+        TextMessage message = new TextMessage(payload);
+        for(PushSession session : this.sessions)
+            session.offerMarketData(message);
+    }
+
+    // 只解析 userId，用户在本节点无连接时直接丢弃
+    void onNotification(String payload) {
+        UserIdOnly notification;
+        try {
+            notification = JsonUtil.readJson(payload, UserIdOnly.class);
+        } catch (RuntimeException e) {
+            return;
+        }
+        if(notification.userId == null)
+            return;
+        Set<PushSession> targets = this.userSessions.get(notification.userId);
+        if(targets == null)
+            return;
+        TextMessage message = new TextMessage(payload);
+        for(PushSession session : targets)
+            session.offerUserMessage(message);
+    }
+
+    // 反序列化时跳过 data 等其余字段
+    static class UserIdOnly {
+        public Long userId;
+    }
+
+    static List<Integer> parseShards(String shards, int total) {
+        List<Integer> result = new ArrayList<>();
+        if(shards == null || shards.isBlank()) {
+            for(int i = 0; i < total; i++)
+                result.add(i);
+            return result;
+        }
+        for(String part : shards.split(",")) {
+            part = part.trim();
+            int pos = part.indexOf('-');
+            int from = Integer.parseInt(pos < 0 ? part : part.substring(0, pos).trim());
+            int to = pos < 0 ? from : Integer.parseInt(part.substring(pos + 1).trim());
+            for(int i = from; i <= to; i++) {
+                if(i < 0 || i >= total)
+                    throw new IllegalArgumentException("invalid notification shard: " + i);
+                result.add(i);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package com.learn.exchange.push;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 单个连接的发送端：同一时刻最多一个写任务，用户通知有界排队，行情只保留最新一份
+public class PushSession {
+    static final Logger logger = LoggerFactory.getLogger(PushSession.class);
+
+    final WebSocketSession session;
+    // 未登录为 null
+    final Long userId;
+    final Executor executor;
+    final int maxPendingMessages;
+
+    private final Queue<TextMessage> userMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicReference<TextMessage> latestMarketData = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    public PushSession(WebSocketSession session, Long userId, Executor executor, int maxPendingMessages) {
+        this.session = session;
+        this.userId = userId;
+        this.executor = executor;
+        this.maxPendingMessages = maxPendingMessages;
+    }
+
+    // 用户通知不可丢弃，积压过多说明客户端过慢，直接断开
+    public void offerUserMessage(TextMessage message) {
+        if(this.closed)
+            return;
+        if(this.pending.incrementAndGet() > this.maxPendingMessages) {
+            logger.warn("close slow session {} of user {}.", this.session.getId(), this.userId);
+            close(CloseStatus.SESSION_NOT_RELIABLE);
+            return;
+        }
+        this.userMessages.add(message);
+        schedule();
+    }
+
+    // 行情覆盖未发送的旧数据
+    public void offerMarketData(TextMessage message) {
+        if(this.closed)
+            return;
+        this.latestMarketData.set(message);
+        schedule();
+    }
+
+    public void close(CloseStatus status) {
+        this.closed = true;
+        try {
+            this.session.close(status);
+        } catch (IOException e) {
+            logger.debug("close session {} failed: {}", this.session.getId(), e.getMessage());
+        }
+    }
+
+    private void schedule() {
+        if(this.scheduled.compareAndSet(false, true))
+            this.executor.execute(this::drain);
+    }
+
+    private void drain() {
+        try {
+            TextMessage message;
+            while((message = this.userMessages.poll()) != null) {
+                this.pending.decrementAndGet();
+                send(message);
+            }
+            TextMessage marketData = this.latestMarketData.getAndSet(null);
+            if(marketData != null)
+                send(marketData);
+        } catch (IOException e) {
+            logger.debug("send to session {} failed: {}", this.session.getId(), e.getMessage());
+            close(CloseStatus.SERVER_ERROR);
+            return;
+        } finally {
+            this.scheduled.set(false);
+        }
+        // 发送期间可能有新消息到达
+        if(!this.closed && (!this.userMessages.isEmpty() || this.latestMarketData.get() != null))
+            schedule();
+    }
+
+    private void send(TextMessage message) throws IOException {
+        if(this.closed || !this.session.isOpen())
+            return;
+        this.session.sendMessage(message);
+    }
+}
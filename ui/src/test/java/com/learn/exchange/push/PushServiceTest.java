@@ -0,0 +1,20 @@
+package com.learn.exchange.push;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PushServiceTest {
+
+    @Test
+    public void testParseShards() {
+        assertEquals(List.of(0, 1, 2, 3), PushService.parseShards("", 4));
+        assertEquals(List.of(0, 1, 2, 3), PushService.parseShards(null, 4));
+        assertEquals(List.of(2), PushService.parseShards("2", 4));
+        assertEquals(List.of(0, 1, 2, 5, 7), PushService.parseShards("0-2, 5 ,7", 8));
+        assertThrows(IllegalArgumentException.class, () -> PushService.parseShards("6-8", 8));
+        assertThrows(IllegalArgumentException.class, () -> PushService.parseShards("a", 8));
+    }
+}
@@ -0,0 +1,149 @@
+package com.learn.exchange.push;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PushSessionTest {
+
+    // 手动执行的写任务
+    final Deque<Runnable> tasks = new ArrayDeque<>();
+    final FakeSession session = new FakeSession();
+
+    @Test
+    public void testCloseSlowSession() {
+        PushSession pushSession = new PushSession(session, 1L, tasks::add, 3);
+        for(int i = 0; i < 3; i++)
+            pushSession.offerUserMessage(new TextMessage("order-" + i));
+        assertNull(session.closeStatus);
+        // 只安排一个写任务
+        assertEquals(1, tasks.size());
+        // 写任务未执行时积压超过上限，断开连接
+        pushSession.offerUserMessage(new TextMessage("order-3"));
+        assertEquals(CloseStatus.SESSION_NOT_RELIABLE, session.closeStatus);
+        runTasks();
+        assertTrue(session.sent.isEmpty());
+    }
+
+    @Test
+    public void testConflateMarketData() {
+        PushSession pushSession = new PushSession(session, 1L, tasks::add, 100);
+        pushSession.offerMarketData(new TextMessage("book-1"));
+        pushSession.offerUserMessage(new TextMessage("order-1"));
+        pushSession.offerMarketData(new TextMessage("book-2"));
+        pushSession.offerUserMessage(new TextMessage("order-2"));
+        pushSession.offerMarketData(new TextMessage("book-3"));
+        runTasks();
+        // 用户通知全部按顺序发送，行情只发送最新一份
+        assertEquals(List.of("order-1", "order-2", "book-3"), session.sent);
+        pushSession.offerMarketData(new TextMessage("book-4"));
+        runTasks();
+        assertEquals("book-4", session.sent.getLast());
+        assertNull(session.closeStatus);
+    }
+
+    void runTasks() {
+        Runnable task;
+        while((task = tasks.poll()) != null)
+            task.run();
+    }
+
+    static class FakeSession implements WebSocketSession {
+        final List<String> sent = new ArrayList<>();
+        CloseStatus closeStatus;
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            sent.add(((TextMessage) message).getPayload());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return closeStatus == null;
+        }
+
+        @Override
+        public void close() {
+            close(CloseStatus.NORMAL);
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+            closeStatus = status;
+        }
+
+        @Override
+        public String getId() {
+            return "test";
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return null;
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return 0;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+    }
+}